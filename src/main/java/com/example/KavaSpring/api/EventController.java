@@ -2,6 +2,7 @@ package com.example.KavaSpring.api;
 
 import com.example.KavaSpring.config.openapi.ShowAPI;
 import com.example.KavaSpring.exceptions.EventAlreadyExistsException;
+import com.example.KavaSpring.exceptions.IllegalStatusTransitionException;
 import com.example.KavaSpring.exceptions.NotFoundException;
 import com.example.KavaSpring.exceptions.NotValidEnumException;
 import com.example.KavaSpring.exceptions.UnauthorizedException;
@@ -10,6 +11,7 @@ import com.example.KavaSpring.models.enums.EventStatus;
 import com.example.KavaSpring.services.EventService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -53,11 +55,11 @@ public class EventController {
     }
 
     @PostMapping("filter")
-    public ResponseEntity<List<EventExpandedResponse>> filterEvents(@RequestBody EventSearchRequest request) {
+    public ResponseEntity<PageResponse<EventExpandedResponse>> filterEvents(@RequestBody EventSearchRequest request) {
         try {
             log.info("Search for events started");
             return ResponseEntity.ok(eventService.filterEvents(request));
-        } catch (NotValidEnumException e) {
+        } catch (NotValidEnumException | IllegalArgumentException e) {
             log.error(e.getMessage());
             return ResponseEntity.badRequest().build();
         }
@@ -71,6 +73,9 @@ public class EventController {
         } catch (NotFoundException e) {
             log.error(e.getMessage());
             return ResponseEntity.notFound().build();
+        } catch (IllegalStatusTransitionException e) {
+            log.error(e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         }
     }
 
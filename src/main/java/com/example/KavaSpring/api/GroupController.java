@@ -3,12 +3,14 @@ package com.example.KavaSpring.api;
 import com.example.KavaSpring.config.openapi.ShowAPI;
 import com.example.KavaSpring.exceptions.GroupAlreadyExistsException;
 import com.example.KavaSpring.exceptions.NotFoundException;
+import com.example.KavaSpring.exceptions.ServiceOverloadedException;
 import com.example.KavaSpring.models.dto.GroupDto;
 import com.example.KavaSpring.models.dto.GroupRequest;
 import com.example.KavaSpring.models.dto.GroupResponse;
 import com.example.KavaSpring.services.GroupService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -29,6 +31,9 @@ public class GroupController {
         } catch (GroupAlreadyExistsException e) {
             log.error(e.getMessage());
             return ResponseEntity.badRequest().build();
+        } catch (ServiceOverloadedException e) {
+            log.error(e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         }
     }
     @GetMapping("{id}")
@@ -53,6 +58,9 @@ public class GroupController {
         } catch (IllegalArgumentException e) {
             log.error(e.getMessage());
             return ResponseEntity.notFound().build();
+        } catch (ServiceOverloadedException e) {
+            log.error(e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         }
     }
 }
@@ -1,18 +1,24 @@
 package com.example.KavaSpring.api;
 
 import com.example.KavaSpring.config.openapi.ShowAPI;
+import com.example.KavaSpring.exceptions.IllegalStatusTransitionException;
 import com.example.KavaSpring.exceptions.NotFoundException;
 import com.example.KavaSpring.exceptions.NotValidEnumException;
 import com.example.KavaSpring.exceptions.OrderAlreadyRatedException;
 import com.example.KavaSpring.models.dto.*;
+import com.example.KavaSpring.models.enums.ExportFormat;
 import com.example.KavaSpring.models.enums.OrderStatus;
 import com.example.KavaSpring.services.OrderService;
+import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -53,16 +59,21 @@ public class OrderController {
     }
 
     @GetMapping("all")
-    public ResponseEntity<List<OrderEventInfoDto>> getAllOrdersFromUserProfile() {
+    public ResponseEntity<PageResponse<OrderEventInfoDto>> getAllOrdersFromUserProfile(@RequestParam(required = false) String cursor,
+                                                                                        @RequestParam(required = false) Integer limit,
+                                                                                        @RequestParam(defaultValue = "false") boolean includeTotal) {
         try {
             log.info("Fetching all orders from user profile");
-            List<OrderEventInfoDto> orders = orderService.getAllOrdersFromUserProfile();
+            PageResponse<OrderEventInfoDto> orders = orderService.getAllOrdersFromUserProfile(new KeysetPageRequest(cursor, limit, includeTotal));
 
-            if (orders.isEmpty()) {
+            if (orders.getItems().isEmpty()) {
                 log.info("No orders found for user profile id");
                 return ResponseEntity.noContent().build();
             }
             return ResponseEntity.ok(orders);
+        } catch (IllegalArgumentException e) {
+            log.error(e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (NotFoundException e) {
             log.error(e.getMessage());
             return ResponseEntity.notFound().build();
@@ -70,18 +81,39 @@ public class OrderController {
     }
 
 
+    @GetMapping("export")
+    public ResponseEntity<StreamingResponseBody> exportOrders(@RequestParam(defaultValue = "NDJSON") ExportFormat format) {
+        try {
+            log.info("Exporting orders from user profile");
+            StreamingResponseBody body = orderService.exportOrders(format);
+            String fileName = format == ExportFormat.CSV ? "orders.csv" : "orders.ndjson";
+            MediaType mediaType = format == ExportFormat.CSV ? MediaType.parseMediaType("text/csv") : MediaType.APPLICATION_NDJSON;
+
+            return ResponseEntity.ok()
+                    .contentType(mediaType)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                    .body(body);
+        } catch (NotFoundException e) {
+            log.error(e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @PostMapping("activity")
-    public ResponseEntity<List<OrderActivityResponse>> getOrdersByActivityStatus(@RequestParam boolean isActive) {
+    public ResponseEntity<PageResponse<OrderActivityResponse>> getOrdersByActivityStatus(@RequestParam boolean isActive,
+                                                                                         @RequestParam(required = false) String cursor,
+                                                                                         @RequestParam(required = false) Integer limit,
+                                                                                         @RequestParam(defaultValue = "false") boolean includeTotal) {
         try {
             log.info("Fetching active orders for user profile");
-            List<OrderActivityResponse> activeOrders = orderService.getOrdersByActivityStatus(isActive);
-            if (activeOrders == null || activeOrders.isEmpty()) {
+            PageResponse<OrderActivityResponse> activeOrders = orderService.getOrdersByActivityStatus(isActive, new KeysetPageRequest(cursor, limit, includeTotal));
+            if (activeOrders.getItems().isEmpty()) {
                 log.info("No active orders found for user profile");
                 return ResponseEntity.noContent().build();
             } else {
                 return ResponseEntity.ok(activeOrders);
             }
-        } catch (IllegalStateException e) {
+        } catch (IllegalStateException | IllegalArgumentException e) {
             log.error(e.getMessage());
             return ResponseEntity.badRequest().build();
         } catch (NotFoundException e) {
@@ -98,6 +130,9 @@ public class OrderController {
         } catch (NotFoundException e) {
             log.error(e.getMessage());
             return ResponseEntity.notFound().build();
+        } catch (IllegalStatusTransitionException e) {
+            log.error(e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         }
     }
 
@@ -109,6 +144,23 @@ public class OrderController {
         } catch (NotValidEnumException e) {
             log.error(e.getMessage());
             return ResponseEntity.badRequest().build();
+        } catch (IllegalStatusTransitionException e) {
+            log.error(e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @PatchMapping("update/bulk")
+    public ResponseEntity<OrderBulkStatusResponse> bulkUpdateOrdersStatus(@Valid @RequestBody OrderBulkStatusRequest request) {
+        try {
+            log.info("Bulk order status update started");
+            return ResponseEntity.ok(orderService.bulkUpdateOrdersStatus(request));
+        } catch (NotValidEnumException | IllegalArgumentException e) {
+            log.error(e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStatusTransitionException e) {
+            log.error(e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         }
     }
 
@@ -138,10 +190,13 @@ public class OrderController {
     }
 
     @PostMapping("search")
-    public ResponseEntity<List<OrderSearchResponse>> searchOrders(@RequestBody OrderSearchRequest request) {
+    public ResponseEntity<PageResponse<OrderSearchResponse>> searchOrders(@RequestBody OrderSearchRequest request) {
         try {
             log.info("Search orders");
             return ResponseEntity.ok(orderService.searchOrders(request));
+        } catch (IllegalArgumentException e) {
+            log.error(e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (NotFoundException e) {
             log.error(e.getMessage());
             return ResponseEntity.notFound().build();
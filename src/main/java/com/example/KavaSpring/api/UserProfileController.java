@@ -6,6 +6,8 @@ import com.example.KavaSpring.exceptions.NotFoundException;
 import com.example.KavaSpring.exceptions.UnverifiedUserException;
 import com.example.KavaSpring.exceptions.UserProfileExistsException;
 import com.example.KavaSpring.models.dto.GroupMemberResponse;
+import com.example.KavaSpring.models.dto.KeysetPageRequest;
+import com.example.KavaSpring.models.dto.PageResponse;
 import com.example.KavaSpring.models.dto.UserProfileDto;
 import com.example.KavaSpring.models.dto.UserProfileRequest;
 import com.example.KavaSpring.models.dto.UserProfileResponse;
@@ -100,11 +102,14 @@ public class UserProfileController {
     }
 
     @GetMapping("group")
-    public ResponseEntity<List<GroupMemberResponse>> getGroupMembers(@RequestParam SortCondition sortCondition) {
+    public ResponseEntity<PageResponse<GroupMemberResponse>> getGroupMembers(@RequestParam SortCondition sortCondition,
+                                                                             @RequestParam(required = false) String cursor,
+                                                                             @RequestParam(required = false) Integer limit,
+                                                                             @RequestParam(defaultValue = "false") boolean includeTotal) {
         try {
             log.info("Fetching group members");
-            return ResponseEntity.ok(userProfileService.getGroupMembers(sortCondition));
-        } catch (IllegalStateException e) {
+            return ResponseEntity.ok(userProfileService.getGroupMembers(sortCondition, new KeysetPageRequest(cursor, limit, includeTotal)));
+        } catch (IllegalStateException | IllegalArgumentException e) {
             log.error(e.getMessage());
             return ResponseEntity.badRequest().build();
         }
@@ -0,0 +1,25 @@
+package com.example.KavaSpring.config;
+
+import com.sendgrid.Request;
+import com.sendgrid.Response;
+import com.sendgrid.SendGrid;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+
+/**
+ * Offline SendGrid client used when SENDGRID_FAKE=true, every request is logged and accepted with 202.
+ */
+@Slf4j
+public class FakeSendGrid extends SendGrid {
+
+    public FakeSendGrid() {
+        super("fake-api-key");
+    }
+
+    @Override
+    public Response api(Request request) {
+        log.info("Fake SendGrid {} {}: {}", request.getMethod(), request.getEndpoint(), request.getBody());
+        return new Response(202, "", Map.of());
+    }
+}
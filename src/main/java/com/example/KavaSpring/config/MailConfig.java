@@ -1,16 +1,40 @@
 package com.example.KavaSpring.config;
 
+import com.sendgrid.Client;
 import com.sendgrid.SendGrid;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class MailConfig {
-    @Value("${SENDGRID_API_KEY}")
-    private String apiKey;
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "SENDGRID_FAKE", havingValue = "false", matchIfMissing = true)
+    public CloseableHttpClient sendGridHttpClient(@Value("${sendGridMaxConnections:20}") int maxConnections) {
+        //? all calls go to api.sendgrid.com, so the per route limit is the effective pool size
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "SENDGRID_FAKE", havingValue = "false", matchIfMissing = true)
+    public SendGrid sendGrid(@Value("${SENDGRID_API_KEY}") String apiKey, CloseableHttpClient sendGridHttpClient) {
+        return new SendGrid(apiKey, new Client(sendGridHttpClient));
+    }
+
     @Bean
-    public SendGrid sendGrid() {
-        return new SendGrid(apiKey);
+    @ConditionalOnProperty(name = "SENDGRID_FAKE", havingValue = "true")
+    public SendGrid fakeSendGrid() {
+        return new FakeSendGrid();
     }
 }
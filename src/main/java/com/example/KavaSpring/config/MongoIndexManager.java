@@ -0,0 +1,240 @@
+package com.example.KavaSpring.config;
+
+import com.example.KavaSpring.models.dao.*;
+import com.example.KavaSpring.models.enums.EmailStatus;
+import com.example.KavaSpring.models.enums.EventStatus;
+import com.example.KavaSpring.models.enums.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/**
+ * Ensures the indexes declared on the entities at startup and verifies that every registered query shape is index backed.
+ * Spring Data does not create annotated indexes on its own anymore, so this is the only place they get created.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MongoIndexManager {
+
+    private static final List<Class<?>> INDEXED_ENTITIES = List.of(
+            User.class,
+            UserProfile.class,
+            Group.class,
+            Event.class,
+            Order.class,
+            VerificationInvitation.class,
+            EmailOutbox.class,
+            EventCascade.class,
+            TokenRevocation.class
+    );
+
+    //? indexes superseded by a definition under a new name, dropped once every index of the collection exists
+    private static final Map<String, List<String>> RETIRED_INDEXES = Map.of(
+            "orders", List.of("order_profile_created_index", "order_profile_status_created_index"),
+            "events", List.of("event_search_index"),
+            "verificationCodes", List.of("verification_email_index")
+    );
+
+    public record QueryShape(String name, String collection, Document filter, Document sort) {
+    }
+
+    private final MongoTemplate mongoTemplate;
+
+    private final List<QueryShape> queryShapes = new CopyOnWriteArrayList<>(defaultQueryShapes());
+
+    //? off, warn or fail, fail stops the startup when a query shape falls back to a collection scan
+    @Value("${mongoQueryPlanCheck:warn}")
+    private String queryPlanCheck;
+
+    public void registerQueryShape(QueryShape shape) {
+        queryShapes.add(shape);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        deactivateDuplicateInvitations();
+        ensureIndexes();
+
+        if ("off".equalsIgnoreCase(queryPlanCheck)) {
+            return;
+        }
+
+        List<String> collectionScans = verifyQueryPlans();
+        if (collectionScans.isEmpty()) {
+            log.info("All {} registered query shapes are index backed", queryShapes.size());
+        } else if ("fail".equalsIgnoreCase(queryPlanCheck)) {
+            throw new IllegalStateException("Query shapes fall back to COLLSCAN: " + collectionScans);
+        } else {
+            log.warn("Query shapes fall back to COLLSCAN: {}", collectionScans);
+        }
+    }
+
+    public void ensureIndexes() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+
+        Set<String> incomplete = new HashSet<>();
+        for (Class<?> entity : INDEXED_ENTITIES) {
+            IndexOperations indexOps = mongoTemplate.indexOps(entity);
+            resolver.resolveIndexFor(entity).forEach(index -> {
+                //? documents written before a unique index existed can violate it, the index stays missing until they are cleaned up
+                try {
+                    indexOps.ensureIndex(index);
+                } catch (RuntimeException e) {
+                    incomplete.add(mongoTemplate.getCollectionName(entity));
+                    log.error("Index {} of {} could not be created: {}", index.getIndexOptions().get("name"), entity.getSimpleName(), e.getMessage());
+                }
+            });
+            log.info("Indexes ensured for {}", entity.getSimpleName());
+        }
+
+        RETIRED_INDEXES.forEach((collection, names) -> {
+            if (incomplete.contains(collection)) {
+                log.warn("Retired indexes of {} are kept until its replacement indexes exist", collection);
+                return;
+            }
+            IndexOperations indexOps = mongoTemplate.indexOps(collection);
+            Set<String> existing = new HashSet<>();
+            indexOps.getIndexInfo().forEach(index -> existing.add(index.getName()));
+            names.stream().filter(existing::contains).forEach(name -> {
+                indexOps.dropIndex(name);
+                log.info("Retired index {} dropped from {}", name, collection);
+            });
+        });
+    }
+
+    //? invitations created before verification_email_active_unique existed, only the newest active invitation per email stays active
+    public long deactivateDuplicateInvitations() {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("active").is(true)),
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "expiresAt", "_id")),
+                Aggregation.group("email").push("_id").as("ids").count().as("count"),
+                Aggregation.match(Criteria.where("count").gt(1))
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        try (Stream<Document> duplicates = mongoTemplate.aggregateStream(aggregation, "verificationCodes", Document.class)) {
+            long deactivated = duplicates.mapToLong(duplicate -> {
+                List<Object> ids = duplicate.getList("ids", Object.class);
+                Query stale = new Query(Criteria.where("_id").in(ids.subList(1, ids.size())).and("active").is(true));
+                return mongoTemplate.updateMulti(stale, new Update().set("active", false), VerificationInvitation.class).getModifiedCount();
+            }).sum();
+            if (deactivated > 0) {
+                log.info("Deactivated {} duplicate verification invitations", deactivated);
+            }
+            return deactivated;
+        } catch (RuntimeException e) {
+            log.error("Deactivating duplicate verification invitations failed: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    public List<String> verifyQueryPlans() {
+        List<String> collectionScans = new ArrayList<>();
+
+        for (QueryShape shape : queryShapes) {
+            Document find = new Document("find", shape.collection()).append("filter", shape.filter());
+            if (shape.sort() != null) {
+                find.append("sort", shape.sort());
+            }
+
+            Document explain = mongoTemplate.getDb().runCommand(new Document("explain", find).append("verbosity", "queryPlanner"));
+            Document queryPlanner = explain.get("queryPlanner", Document.class);
+            if (queryPlanner != null && containsStage(queryPlanner.get("winningPlan"), "COLLSCAN")) {
+                collectionScans.add(shape.name());
+            }
+        }
+        return collectionScans;
+    }
+
+    //? walks inputStage, inputStages and the SBE queryPlan wrapper of the explain output
+    private static boolean containsStage(Object plan, String stage) {
+        if (plan instanceof Document document) {
+            if (stage.equals(document.getString("stage"))) {
+                return true;
+            }
+            for (Object value : document.values()) {
+                if (containsStage(value, stage)) {
+                    return true;
+                }
+            }
+        } else if (plan instanceof Collection<?> plans) {
+            for (Object value : plans) {
+                if (containsStage(value, stage)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    //? mirrors the queries issued by the services, sample values only matter for their type
+    private static List<QueryShape> defaultQueryShapes() {
+        ObjectId id = new ObjectId();
+        Date now = new Date();
+        List<String> activeStatuses = List.of(EventStatus.PENDING.name(), EventStatus.IN_PROGRESS.name());
+
+        return List.of(
+                new QueryShape("users.byEmail", "users",
+                        new Document("email", "user@example.com"), null),
+                new QueryShape("userProfiles.byUserId", "userProfiles",
+                        new Document("userId", id.toHexString()), null),
+                new QueryShape("userProfiles.byGroupId", "userProfiles",
+                        new Document("groupId", id), null),
+                new QueryShape("groups.byName", "groups",
+                        new Document("name", "group"), null),
+                new QueryShape("events.filter", "events",
+                        new Document("groupId", id).append("status", EventStatus.PENDING.name()).append("userProfileId", new Document("$ne", id)),
+                        new Document("createdAt", -1)),
+                new QueryShape("events.activeByCreator", "events",
+                        new Document("userProfileId", id).append("status", new Document("$in", activeStatuses)), null),
+                new QueryShape("events.pendingDue", "events",
+                        new Document("status", EventStatus.PENDING.name()).append("pendingUntil", new Document("$lt", now)), null),
+                new QueryShape("orders.byUserProfile", "orders",
+                        new Document("userProfileId", id), new Document("createdAt", -1).append("_id", -1)),
+                new QueryShape("orders.activity", "orders",
+                        new Document("userProfileId", id).append("eventOutcome", null), new Document("_id", -1)),
+                new QueryShape("userProfiles.groupMembers", "userProfiles",
+                        new Document("groupId", id).append("orderCount", new Document("$gt", 0)), new Document("score", -1).append("_id", -1)),
+                new QueryShape("orders.search", "orders",
+                        new Document("userProfileId", id)
+                                .append("status", new Document("$in", List.of(OrderStatus.IN_PROGRESS.name(), OrderStatus.READY.name())))
+                                .append("createdAt", new Document("$gte", now)),
+                        new Document("createdAt", -1)),
+                new QueryShape("events.textSearch", "events",
+                        new Document("groupId", id).append("$text", new Document("$search", "coffee")), null),
+                new QueryShape("orders.byEventAndStatus", "orders",
+                        new Document("eventId", id).append("status", OrderStatus.IN_PROGRESS.name()), null),
+                new QueryShape("orders.byUserProfileAndEvent", "orders",
+                        new Document("userProfileId", id).append("eventId", id), null),
+                new QueryShape("verificationCodes.liveByEmail", "verificationCodes",
+                        new Document("email", "user@example.com").append("active", true).append("lastSentAt", new Document("$lt", now)), null),
+                new QueryShape("eventCascades.pending", "eventCascades",
+                        new Document("done", false).append("createdAt", new Document("$lt", now)), null),
+                new QueryShape("emailOutbox.dispatch", "emailOutbox",
+                        new Document("status", EmailStatus.PENDING.name()).append("nextAttemptAt", new Document("$lte", now)),
+                        new Document("nextAttemptAt", 1)),
+                new QueryShape("emailOutbox.batch", "emailOutbox",
+                        new Document("batchKey", "digest").append("status", EmailStatus.PENDING.name()).append("nextAttemptAt", new Document("$lte", now)),
+                        null)
+        );
+    }
+}
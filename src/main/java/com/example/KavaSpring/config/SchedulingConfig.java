@@ -0,0 +1,26 @@
+package com.example.KavaSpring.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Thread pool for the scheduled jobs. The websocket broker registers its own task scheduler,
+ * without a bean named taskScheduler every scheduled job would share a single thread.
+ */
+@Configuration
+public class SchedulingConfig {
+
+    @Value("${schedulerPoolSize:4}")
+    private int poolSize;
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("scheduler-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(false);
+        return scheduler;
+    }
+}
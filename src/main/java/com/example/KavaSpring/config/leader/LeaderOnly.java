@@ -0,0 +1,13 @@
+package com.example.KavaSpring.config.leader;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//? scheduled jobs with cluster wide effects, they are skipped on every instance that does not hold the leader lease
+//? a job can outlive the lease, writes that are not idempotent have to be conditioned on the fencing token
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LeaderOnly {
+}
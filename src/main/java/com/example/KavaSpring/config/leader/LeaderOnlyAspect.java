@@ -0,0 +1,34 @@
+package com.example.KavaSpring.config.leader;
+
+import com.example.KavaSpring.services.LeaderElectionService;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+@Aspect
+@Component
+@Slf4j
+@AllArgsConstructor
+public class LeaderOnlyAspect {
+
+    private final LeaderElectionService leaderElectionService;
+
+    @Around("@annotation(com.example.KavaSpring.config.leader.LeaderOnly)")
+    public Object runOnLeader(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!leaderElectionService.isLeader()) {
+            log.debug("Skipping {}, this instance is not the leader", joinPoint.getSignature().toShortString());
+            return null;
+        }
+
+        long fencingToken = leaderElectionService.getFencingToken();
+        Object result = joinPoint.proceed();
+        //? a job that outlived the lease may have overlapped with the next leader
+        if (!leaderElectionService.isLeader() || leaderElectionService.getFencingToken() != fencingToken) {
+            log.warn("Leadership was lost while {} was running (fencing token {})", joinPoint.getSignature().toShortString(), fencingToken);
+        }
+        return result;
+    }
+}
@@ -17,6 +17,7 @@ public interface ConverterService {
     EventDto convertToEventDto(Event event);
     EventResponse convertToEventResponse(EventRequest request);
     EventExpandedResponse convertToEventExpandedResponse(Event event);
+    List<EventExpandedResponse> convertToEventExpandedResponses(List<Event> events);
     OrderDto convertToOrderDto(Order order);
     OrderResponse convertToOrderResponse(OrderRequest request);
     OrderActivityResponse convertToOrderActiveResponse(OrderActivityResponse response);
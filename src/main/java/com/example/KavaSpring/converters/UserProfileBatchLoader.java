@@ -0,0 +1,40 @@
+package com.example.KavaSpring.converters;
+
+import com.example.KavaSpring.models.dao.UserProfile;
+import lombok.AllArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Loads the user profiles referenced by a batch of documents with a single projected $in query.
+ */
+@Component
+@AllArgsConstructor
+public class UserProfileBatchLoader {
+
+    private final MongoTemplate mongoTemplate;
+
+    public Map<String, UserProfile> loadByIds(Collection<String> ids, String... fields) {
+        Set<String> distinctIds = ids.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (distinctIds.isEmpty()) {
+            return Map.of();
+        }
+
+        Query query = new Query(Criteria.where("_id").in(distinctIds));
+        query.fields().include(fields);
+
+        return mongoTemplate.find(query, UserProfile.class)
+                .stream()
+                .collect(Collectors.toMap(UserProfile::getId, Function.identity()));
+    }
+
+    public Map<String, UserProfile> loadNames(Collection<String> ids) {
+        return loadByIds(ids, "firstName", "lastName");
+    }
+}
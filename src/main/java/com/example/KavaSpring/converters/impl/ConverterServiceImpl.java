@@ -1,24 +1,26 @@
 package com.example.KavaSpring.converters.impl;
 
 import com.example.KavaSpring.converters.ConverterService;
+import com.example.KavaSpring.converters.UserProfileBatchLoader;
 import com.example.KavaSpring.models.dao.Event;
 import com.example.KavaSpring.models.dao.Group;
 import com.example.KavaSpring.models.dao.Order;
 import com.example.KavaSpring.models.dao.UserProfile;
 import com.example.KavaSpring.models.dto.*;
-import com.example.KavaSpring.repository.UserProfileRepository;
 import com.example.KavaSpring.services.AmazonS3Service;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.net.URL;
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @AllArgsConstructor
 public class ConverterServiceImpl implements ConverterService {
 
-    private final UserProfileRepository userProfileRepository;
+    private final UserProfileBatchLoader userProfileBatchLoader;
 
     private final AmazonS3Service amazonS3Service;
 
@@ -90,11 +92,22 @@ public class ConverterServiceImpl implements ConverterService {
 
     @Override
     public EventExpandedResponse convertToEventExpandedResponse(Event event) {
+        return convertToEventExpandedResponses(List.of(event)).get(0);
+    }
+
+    @Override
+    public List<EventExpandedResponse> convertToEventExpandedResponses(List<Event> events) {
+        Map<String, UserProfile> creators = userProfileBatchLoader.loadNames(events.stream().map(Event::getUserProfileId).toList());
+        return events.stream()
+                .map(event -> convertToEventExpandedResponse(event, creators.get(event.getUserProfileId())))
+                .collect(Collectors.toList());
+    }
+
+    private EventExpandedResponse convertToEventExpandedResponse(Event event, UserProfile creator) {
         EventExpandedResponse response = new EventExpandedResponse();
-        Optional<UserProfile> userProfile = userProfileRepository.findById(event.getUserProfileId());
-        if (userProfile.isPresent()) {
-            response.setUserProfileFirstName(userProfile.get().getFirstName());
-            response.setUserProfileLastName(userProfile.get().getLastName());
+        if (creator != null) {
+            response.setUserProfileFirstName(creator.getFirstName());
+            response.setUserProfileLastName(creator.getLastName());
         }
         response.setEventId(event.getId());
         response.setUserProfileId(event.getUserProfileId());
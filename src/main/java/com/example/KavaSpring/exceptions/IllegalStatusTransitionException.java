@@ -0,0 +1,7 @@
+package com.example.KavaSpring.exceptions;
+
+public class IllegalStatusTransitionException extends RuntimeException {
+    public IllegalStatusTransitionException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.KavaSpring.models.dao;
+
+import com.example.KavaSpring.models.enums.EmailStatus;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Document(collection = "emailOutbox")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@CompoundIndexes({
+        @CompoundIndex(name = "email_outbox_dispatch_index", def = "{'status': 1, 'nextAttemptAt': 1}"),
+        @CompoundIndex(name = "email_outbox_batch_index", def = "{'batchKey': 1, 'status': 1, 'nextAttemptAt': 1}",
+                partialFilter = "{'batchKey': {'$exists': true}}")
+})
+public class EmailOutbox {
+
+    @Id
+    private String id;
+
+    @Email
+    @NotBlank
+    private String from;
+
+    @Email
+    @NotBlank
+    private String to;
+
+    @NotBlank
+    private String subject;
+
+    private String body;
+
+    //? digest of sender, subject and body, messages with the same content are dispatched together in one mail/send call
+    private String batchKey;
+
+    private EmailStatus status = EmailStatus.PENDING;
+
+    private int attempts;
+
+    private LocalDateTime nextAttemptAt = LocalDateTime.now();
+
+    //? a SENDING message whose lock expired is picked up again, e.g. after a node crashed mid dispatch
+    private LocalDateTime lockedUntil;
+
+    //? token of the claim holding the lock, only that claim may complete the message
+    private String lockedBy;
+
+    private String lastError;
+
+    @CreatedDate
+    private LocalDateTime createdAt;
+
+    //? sent messages are purged after a week, failed ones stay as DEAD for inspection
+    @Indexed(name = "email_outbox_sent_ttl", expireAfter = "7d")
+    private LocalDateTime sentAt;
+}
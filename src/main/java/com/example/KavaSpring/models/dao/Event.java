@@ -10,7 +10,10 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 
 import java.time.LocalDateTime;
 
@@ -18,13 +21,23 @@ import java.time.LocalDateTime;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@CompoundIndex(name = "event_search_index", def = "{'status': 1, 'eventType': 1, 'groupId': 1, 'creatorId': 1, 'createdAt': -1}")
+@CompoundIndexes({
+        @CompoundIndex(name = "event_search_id_index", def = "{'groupId': 1, 'status': 1, 'eventType': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "event_creator_status_index", def = "{'userProfileId': 1, 'status': 1}"),
+        //? one active event per creator, partial filters with $in need MongoDB 6.0+
+        @CompoundIndex(name = "event_creator_active_unique", def = "{'userProfileId': 1}", unique = true,
+                partialFilter = "{'status': {'$in': ['PENDING', 'IN_PROGRESS']}}"),
+        @CompoundIndex(name = "event_pending_index", def = "{'status': 1, 'pendingUntil': 1}"),
+        //? text searches are always scoped to one group
+        @CompoundIndex(name = "event_text_index", def = "{'groupId': 1, 'title': 'text', 'description': 'text'}")
+})
 public class Event {
 
     @Id
     private String id;
 
     @NotBlank
+    @Field(targetType = FieldType.OBJECT_ID)
     private String userProfileId;
 
     @NotBlank
@@ -35,6 +48,7 @@ public class Event {
     private String description;
 
     @NotBlank
+    @Field(targetType = FieldType.OBJECT_ID)
     private String groupId;
 
     private EventStatus status = EventStatus.PENDING;
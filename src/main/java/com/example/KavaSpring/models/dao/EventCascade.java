@@ -0,0 +1,45 @@
+package com.example.KavaSpring.models.dao;
+
+import com.example.KavaSpring.models.enums.EventStatus;
+import com.example.KavaSpring.models.enums.OrderStatus;
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.time.LocalDateTime;
+
+//? written before an event is closed, its orders are updated from it again if the cascade does not finish
+@Document(collection = "eventCascades")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@CompoundIndex(name = "event_cascade_pending_index", def = "{'done': 1, 'createdAt': 1}")
+public class EventCascade {
+
+    @Id
+    private String id;
+
+    @NotBlank
+    @Field(targetType = FieldType.OBJECT_ID)
+    private String eventId;
+
+    private EventStatus eventStatus;
+
+    private OrderStatus orderStatus;
+
+    private boolean done;
+
+    @CreatedDate
+    private LocalDateTime createdAt;
+
+    @Indexed(name = "event_cascade_done_ttl", expireAfter = "7d")
+    private LocalDateTime doneAt;
+}
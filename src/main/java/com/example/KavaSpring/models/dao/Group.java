@@ -6,6 +6,7 @@ import lombok.*;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime;
 
@@ -20,6 +21,7 @@ public class Group {
 
     @NotBlank
     @Size(max = 50)
+    @Indexed(name = "group_name_index")
     private String name;
 
     @NotBlank
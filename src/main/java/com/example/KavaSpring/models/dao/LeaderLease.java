@@ -0,0 +1,26 @@
+package com.example.KavaSpring.models.dao;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+//? one document per lease name, the fencing token grows every time the lease changes hands
+@Document(collection = "leaderLeases")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LeaderLease {
+
+    @Id
+    private String id;
+
+    private String holderId;
+
+    private LocalDateTime expiresAt;
+
+    private long fencingToken;
+}
@@ -1,5 +1,6 @@
 package com.example.KavaSpring.models.dao;
 
+import com.example.KavaSpring.models.enums.EventStatus;
 import com.example.KavaSpring.models.enums.OrderStatus;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
@@ -10,7 +11,10 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -19,6 +23,14 @@ import java.util.HashMap;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@CompoundIndexes({
+        @CompoundIndex(name = "order_profile_event_unique", def = "{'userProfileId': 1, 'eventId': 1}", unique = true),
+        //? keyset pages sort on (createdAt, _id), the trailing _id keeps the tie break inside the index
+        @CompoundIndex(name = "order_profile_created_id_index", def = "{'userProfileId': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "order_profile_status_created_id_index", def = "{'userProfileId': 1, 'status': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "order_profile_outcome_id_index", def = "{'userProfileId': 1, 'eventOutcome': 1, '_id': -1}"),
+        @CompoundIndex(name = "order_event_status_index", def = "{'eventId': 1, 'status': 1}")
+})
 public class Order {
 
     @Id
@@ -26,18 +38,26 @@ public class Order {
 
     @NotBlank
     @Size(max = 120)
+    @Field(targetType = FieldType.OBJECT_ID)
     private String userProfileId;
 
     @NotBlank
     private OrderStatus status = OrderStatus.IN_PROGRESS;
 
     @NotBlank
+    @Field(targetType = FieldType.OBJECT_ID)
     private String eventId;
 
+    //? status the event was closed with, null while the event is open, lets the activity listing filter on the order alone
+    private EventStatus eventOutcome;
+
     private HashMap<String, Object> additionalOptions;
 
     private int rating;
 
+    //? server time of the rating, the score reconciliation leaves ratings younger than its quiet period alone
+    private LocalDateTime ratedAt;
+
     @CreatedDate
     private LocalDateTime createdAt;
 
@@ -0,0 +1,27 @@
+package com.example.KavaSpring.models.dao;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+//? keyed by userId, tokens of the user issued before revokedAt (whole seconds) are rejected on every instance
+@Document(collection = "tokenRevocations")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TokenRevocation {
+
+    @Id
+    private String id;
+
+    private long revokedAt;
+
+    //? every token issued before the revocation has expired by then
+    @Indexed(name = "token_revocation_ttl", expireAfter = "0s")
+    private LocalDateTime expiresAt;
+}
@@ -8,6 +8,7 @@ import lombok.Setter;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -24,6 +25,7 @@ public class User {
     @NotBlank
     @Size(max = 50)
     @Email
+    @Indexed(name = "user_email_unique", unique = true)
     private String email;
 
     @NotBlank
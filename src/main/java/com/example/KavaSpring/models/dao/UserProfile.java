@@ -8,7 +8,12 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 
 import java.time.LocalDateTime;
 
@@ -16,6 +21,12 @@ import java.time.LocalDateTime;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+//? group member pages, members without orders are filtered out of the (groupId, sort field, _id) range
+@CompoundIndexes({
+        @CompoundIndex(name = "user_profile_group_score_index", def = "{'groupId': 1, 'score': -1, '_id': -1}"),
+        @CompoundIndex(name = "user_profile_group_first_name_index", def = "{'groupId': 1, 'firstName': 1, '_id': 1}"),
+        @CompoundIndex(name = "user_profile_group_order_count_index", def = "{'groupId': 1, 'orderCount': -1, '_id': -1}")
+})
 public class UserProfile {
 
     @Id
@@ -23,6 +34,7 @@ public class UserProfile {
 
     @NotBlank
     @Size(max = 50)
+    @Indexed(name = "user_profile_user_unique", unique = true)
     private String userId;
 
     @NotBlank
@@ -35,10 +47,28 @@ public class UserProfile {
 
     @NotBlank
     @Size(max = 50)
+    @Field(targetType = FieldType.OBJECT_ID)
+    @Indexed(name = "user_profile_group_index")
     private String groupId;
 
     private float score;
 
+    //? running totals of the ratings received on the user's events, score = ratingSum / ratingCount
+    private long ratingSum;
+
+    private long ratingCount;
+
+    //? server time of the last rating applied to the counters
+    private LocalDateTime ratingUpdatedAt;
+
+    //? orders placed by the user, kept by createOrder and repaired by the score reconciliation
+    private long orderCount;
+
+    private LocalDateTime orderCountUpdatedAt;
+
+    //? fencing token of the last score reconciliation that wrote the counters
+    private long reconciliationToken;
+
     private String photoUri;
 
     @CreatedDate
@@ -7,16 +7,23 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 
 @Document(collection = "verificationCodes")
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+//? at most one active invitation per email, concurrent first logins cannot both insert one
+@CompoundIndex(name = "verification_email_active_unique", def = "{'email': 1}", unique = true, partialFilter = "{'active': true}")
 public class VerificationInvitation {
 
+    public static final Duration VALIDITY = Duration.ofMinutes(30);
+
     @Id
     private String id;
 
@@ -30,7 +37,11 @@ public class VerificationInvitation {
     @NotBlank
     private boolean active = true;
 
+    //? TTL index, Mongo removes the invitation once it expires
     @NotBlank
-    private LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(30);
+    @Indexed(name = "verification_expiry_ttl", expireAfterSeconds = 0)
+    private LocalDateTime expiresAt = LocalDateTime.now().plus(VALIDITY);
+
+    private LocalDateTime lastSentAt;
 
 }
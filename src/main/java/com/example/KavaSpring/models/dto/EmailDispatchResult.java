@@ -0,0 +1,15 @@
+package com.example.KavaSpring.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class EmailDispatchResult {
+    private String recipient;
+    private int statusCode;
+    private boolean accepted;
+    private String error;
+}
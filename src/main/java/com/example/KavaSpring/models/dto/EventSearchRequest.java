@@ -18,4 +18,10 @@ public class EventSearchRequest {
     @NotBlank
     private EventType eventType;
 
+    private String cursor;
+
+    private Integer limit;
+
+    private boolean includeTotal;
+
 }
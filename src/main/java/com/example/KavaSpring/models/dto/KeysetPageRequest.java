@@ -0,0 +1,14 @@
+package com.example.KavaSpring.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class KeysetPageRequest {
+    private String cursor;
+    private Integer limit;
+    private boolean includeTotal;
+}
@@ -0,0 +1,25 @@
+package com.example.KavaSpring.models.dto;
+
+import com.example.KavaSpring.models.enums.OrderStatus;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderBulkStatusRequest {
+    //? bounds the $in lists of the single update the request turns into
+    @Size(max = 500)
+    private List<String> orderIds;
+
+    @Size(max = 100)
+    private List<String> eventIds;
+
+    @NotNull
+    private OrderStatus status;
+}
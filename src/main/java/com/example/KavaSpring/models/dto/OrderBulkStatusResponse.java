@@ -5,9 +5,9 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
-@NoArgsConstructor
 @AllArgsConstructor
-public class ScoreCalculationDto {
-    private String userProfileId;
-    private float score;
+@NoArgsConstructor
+public class OrderBulkStatusResponse {
+    private long matchedCount;
+    private long modifiedCount;
 }
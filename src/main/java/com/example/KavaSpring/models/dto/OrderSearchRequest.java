@@ -1,12 +1,28 @@
 package com.example.KavaSpring.models.dto;
 
+import com.example.KavaSpring.models.enums.EventType;
+import com.example.KavaSpring.models.enums.OrderStatus;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class OrderSearchRequest {
+    //? free text over the title and description of the events in the user's group
     private String searchTerm;
+    private List<OrderStatus> statuses;
+    private LocalDateTime createdFrom;
+    private LocalDateTime createdTo;
+    private EventType eventType;
+    //? exact matches on additionalOptions entries, keys are plain field names
+    private Map<String, Object> additionalOptions;
+    private String cursor;
+    private Integer limit;
+    private boolean includeTotal;
 }
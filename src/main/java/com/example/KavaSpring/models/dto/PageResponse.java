@@ -0,0 +1,27 @@
+package com.example.KavaSpring.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PageResponse<T> {
+    private List<T> items;
+    private String nextCursor;
+    private Long totalCount;
+
+    public <R> PageResponse<R> map(Function<T, R> mapper) {
+        return new PageResponse<>(items.stream().map(mapper).collect(Collectors.toList()), nextCursor, totalCount);
+    }
+
+    //? for converters that work on the whole page at once, e.g. to batch load referenced documents
+    public <R> PageResponse<R> mapAll(Function<List<T>, List<R>> mapper) {
+        return new PageResponse<>(mapper.apply(items), nextCursor, totalCount);
+    }
+}
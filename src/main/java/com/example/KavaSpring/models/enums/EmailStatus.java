@@ -0,0 +1,8 @@
+package com.example.KavaSpring.models.enums;
+
+public enum EmailStatus {
+    PENDING,
+    SENDING,
+    SENT,
+    DEAD
+}
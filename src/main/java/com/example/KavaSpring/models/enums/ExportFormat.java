@@ -0,0 +1,6 @@
+package com.example.KavaSpring.models.enums;
+
+public enum ExportFormat {
+    NDJSON,
+    CSV
+}
@@ -0,0 +1,9 @@
+package com.example.KavaSpring.repository;
+
+import com.example.KavaSpring.models.dao.EmailOutbox;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EmailOutboxRepository extends MongoRepository<EmailOutbox, String> {
+}
@@ -2,6 +2,7 @@ package com.example.KavaSpring.security.api;
 
 import com.example.KavaSpring.config.openapi.ShowAPI;
 import com.example.KavaSpring.exceptions.EntityNotFoundException;
+import com.example.KavaSpring.exceptions.ServiceOverloadedException;
 import com.example.KavaSpring.exceptions.UnauthorizedException;
 import com.example.KavaSpring.exceptions.UnverifiedUserException;
 import com.example.KavaSpring.exceptions.UserAlreadyExistsException;
@@ -40,6 +41,9 @@ public class AuthenticationController {
       } catch (UserAlreadyExistsException e) {
           log.error(e.getMessage());
           return ResponseEntity.badRequest().build();
+      } catch (ServiceOverloadedException e) {
+          log.error(e.getMessage());
+          return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
       }
     }
 
@@ -62,6 +66,9 @@ public class AuthenticationController {
         } catch (EntityNotFoundException e) {
             log.error(e.getMessage());
             return ResponseEntity.notFound().build();
+        } catch (ServiceOverloadedException e) {
+            log.error(e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         }
 
     }
@@ -77,6 +84,20 @@ public class AuthenticationController {
         }
     }
 
+    @PostMapping("logout")
+    public ResponseEntity<Void> logout() {
+        try {
+            log.info("Logout started");
+            authService.logout();
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.SET_COOKIE, jwtUtils.createCleanJwtCookie().toString())
+                    .build();
+        } catch (IllegalStateException e) {
+            log.error(e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+    }
+
     @GetMapping("verify")
     public ResponseEntity<String> verifyUser(
             @RequestParam String invitationId,
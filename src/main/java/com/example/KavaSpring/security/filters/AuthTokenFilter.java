@@ -1,7 +1,9 @@
 package com.example.KavaSpring.security.filters;
 
+import com.example.KavaSpring.security.services.impl.UserDetailsImpl;
 import com.example.KavaSpring.security.services.impl.UserDetailsServiceImpl;
 import com.example.KavaSpring.security.utils.JwtUtils;
+import com.example.KavaSpring.security.utils.TokenRevocationRegistry;
 import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -10,6 +12,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -29,6 +32,13 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
     private JwtUtils jwtUtils;
 
+    @Autowired
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
+    //? when enabled the principal is built from the signed claims instead of loading the user from the database
+    @Value("${jwtClaimsAuthentication:true}")
+    private boolean claimsAuthentication;
+
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
 
@@ -37,21 +47,19 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         String jwt = parseJwt(request);
 
         try {
-            if (jwt != null && jwtUtils.validateToken(jwt)) {
-                Claims claims = jwtUtils.getEmailFromJwtToken(jwt);
-                String email = (String) claims.get("sub");
-                // logger.info("Extracted email from JWT: {}", email);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-                logger.info("Loaded user details: {}", userDetails);
-
-                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                        userDetails,
-                        null,
-                        userDetails.getAuthorities()
-                );
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+            Claims claims = jwt != null ? jwtUtils.parseAndValidateToken(jwt) : null;
+            if (claims != null) {
+                UserDetails userDetails = loadUserDetails(claims);
+
+                if (userDetails != null) {
+                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                            userDetails,
+                            null,
+                            userDetails.getAuthorities()
+                    );
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                }
             }
         } catch (Exception e) {
             logger.error("Cannot set user authentication: {}", e.getMessage());
@@ -59,6 +67,30 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private UserDetails loadUserDetails(Claims claims) {
+        String userId = claims.get("userId", String.class);
+
+        if (userId != null && tokenRevocationRegistry.isRevoked(userId, claims.getIssuedAt())) {
+            logger.warn("Rejected revoked token for user: {}", userId);
+            return null;
+        }
+
+        //? tokens issued before the profile claims were added still go through the database lookup
+        if (claimsAuthentication && userId != null && claims.get("userProfileId") != null) {
+            UserDetailsImpl userDetails = UserDetailsImpl.fromClaims(claims);
+            if (!userDetails.isVerified()) {
+                logger.warn("Rejected token of unverified user: {}", userId);
+                return null;
+            }
+            return userDetails;
+        }
+
+        // logger.info("Extracted email from JWT: {}", email);
+        UserDetails userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+        logger.info("Loaded user details: {}", userDetails);
+        return userDetails;
+    }
+
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
 
@@ -0,0 +1,210 @@
+package com.example.KavaSpring.security.filters;
+
+import com.example.KavaSpring.security.utils.TokenBucketRateLimiter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Throttles the login, register and verify endpoints per client IP and per email before any password hashing or database work.
+ * The client IP is taken from X-Forwarded-For only when the request comes through one of the configured trusted proxies.
+ * Behind a load balancer rateLimitTrustedProxies must list its addresses or CIDR range, e.g. rateLimitTrustedProxies=10.0.0.0/8,
+ * otherwise every request resolves to the balancer and all clients share one IP bucket. Setting rateLimitBehindProxy=true
+ * makes a missing rateLimitTrustedProxies fail the startup.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Set<String> LIMITED_PATHS = Set.of("/api/auth/login", "/api/auth/register", "/api/auth/verify");
+
+    private static final Set<String> PATHS_WITH_EMAIL = Set.of("/api/auth/login", "/api/auth/register");
+
+    private final ObjectMapper objectMapper;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${rateLimitIpCapacity:20}")
+    private long ipCapacity;
+
+    @Value("${rateLimitIpRefillPerMinute:20}")
+    private long ipRefillPerMinute;
+
+    @Value("${rateLimitEmailCapacity:5}")
+    private long emailCapacity;
+
+    @Value("${rateLimitEmailRefillPerMinute:5}")
+    private long emailRefillPerMinute;
+
+    @Value("${rateLimitMaxKeys:100000}")
+    private long maxKeys;
+
+    @Value("${rateLimitIdleEvictionMs:600000}")
+    private long idleEvictionMs;
+
+    //? addresses or CIDR ranges of the reverse proxies in front of the app, comma separated
+    @Value("${rateLimitTrustedProxies:}")
+    private String[] trustedProxies;
+
+    @Value("${rateLimitBehindProxy:false}")
+    private boolean behindProxy;
+
+    //? login and register bodies are tiny, anything larger is rejected before it is buffered
+    @Value("${rateLimitMaxBodyBytes:16384}")
+    private int maxBodyBytes;
+
+    private List<IpAddressMatcher> trustedProxyMatchers;
+
+    private TokenBucketRateLimiter ipLimiter;
+
+    private TokenBucketRateLimiter emailLimiter;
+
+    private final AtomicBoolean untrustedForwardingWarned = new AtomicBoolean();
+
+    @PostConstruct
+    void init() {
+        ipLimiter = new TokenBucketRateLimiter(ipCapacity, ipRefillPerMinute, maxKeys, Duration.ofMillis(idleEvictionMs));
+        emailLimiter = new TokenBucketRateLimiter(emailCapacity, emailRefillPerMinute, maxKeys, Duration.ofMillis(idleEvictionMs));
+        trustedProxyMatchers = Arrays.stream(trustedProxies)
+                .map(String::trim)
+                .filter(proxy -> !proxy.isEmpty())
+                .map(IpAddressMatcher::new)
+                .toList();
+
+        if (trustedProxyMatchers.isEmpty()) {
+            if (behindProxy) {
+                throw new IllegalStateException("rateLimitBehindProxy is set but rateLimitTrustedProxies is empty, all clients would share the proxy's IP bucket");
+            }
+            log.warn("rateLimitTrustedProxies is empty, the IP rate limit uses the remote address; set it when running behind a proxy");
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !LIMITED_PATHS.contains(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String path = request.getServletPath();
+
+        String clientIp = resolveClientIp(request);
+        if (!ipLimiter.tryAcquire(clientIp)) {
+            reject(response, path, "ip", ipLimiter.timeUntilAvailable(clientIp));
+            return;
+        }
+
+        if (PATHS_WITH_EMAIL.contains(path)) {
+            if (request.getContentLengthLong() > maxBodyBytes) {
+                rejectTooLarge(response, path);
+                return;
+            }
+            //? the declared length can be missing or wrong, at most one byte over the limit is read
+            byte[] body = request.getInputStream().readNBytes(maxBodyBytes + 1);
+            if (body.length > maxBodyBytes) {
+                rejectTooLarge(response, path);
+                return;
+            }
+
+            CachedBodyHttpServletRequest cachedRequest = new CachedBodyHttpServletRequest(request, body);
+            String email = extractEmail(body);
+
+            if (email != null && !emailLimiter.tryAcquire(email)) {
+                reject(response, path, "email", emailLimiter.timeUntilAvailable(email));
+                return;
+            }
+            filterChain.doFilter(cachedRequest, response);
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    //? walks X-Forwarded-For from the right, the first address not belonging to a trusted proxy is the client
+    private String resolveClientIp(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        String forwardedFor = request.getHeader("X-Forwarded-For");
+        if (forwardedFor == null || !isTrustedProxy(remoteAddr)) {
+            //? forwarded requests with no trusted proxy configured most likely mean a proxy is missing from the configuration
+            if (forwardedFor != null && trustedProxyMatchers.isEmpty() && untrustedForwardingWarned.compareAndSet(false, true)) {
+                log.warn("X-Forwarded-For received from {} but rateLimitTrustedProxies is empty, clients behind it share one IP bucket", remoteAddr);
+            }
+            return remoteAddr;
+        }
+
+        String[] hops = forwardedFor.split(",");
+        String client = remoteAddr;
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (hop.isEmpty()) {
+                break;
+            }
+            client = hop;
+            if (!isTrustedProxy(hop)) {
+                break;
+            }
+        }
+        return client;
+    }
+
+    private boolean isTrustedProxy(String address) {
+        for (IpAddressMatcher matcher : trustedProxyMatchers) {
+            try {
+                if (matcher.matches(address)) {
+                    return true;
+                }
+            } catch (IllegalArgumentException e) {
+                //? a forged hop that is not an IP address is never a trusted proxy
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private String extractEmail(byte[] body) {
+        try {
+            JsonNode email = objectMapper.readTree(body).get("email");
+            return email != null && email.isTextual() ? email.asText().trim().toLowerCase(Locale.ROOT) : null;
+        } catch (IOException e) {
+            //? malformed bodies are rejected by the controller, only the IP limit applies here
+            return null;
+        }
+    }
+
+    private void reject(HttpServletResponse response, String path, String key, Duration retryAfter) {
+        meterRegistry.counter("auth.rate.limit.rejected", "key", key, "path", path).increment();
+        log.warn("Rate limit by {} exceeded on {}", key, path);
+        //? Retry-After is in whole seconds, rounded up so a client retrying on time finds a token
+        long seconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+    }
+
+    private void rejectTooLarge(HttpServletResponse response, String path) {
+        meterRegistry.counter("auth.rate.limit.rejected", "key", "body", "path", path).increment();
+        log.warn("Request body over {} bytes rejected on {}", maxBodyBytes, path);
+        response.setStatus(HttpStatus.PAYLOAD_TOO_LARGE.value());
+    }
+}
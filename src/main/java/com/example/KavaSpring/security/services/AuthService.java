@@ -13,4 +13,5 @@ public interface AuthService {
     RegisterUserResponse register(RegisterUserRequest request);
     void sendVerificationEmail(User user);
     void verifyUser(String invitationId, String verificationCode);
+    void logout();
 }
@@ -18,10 +18,18 @@ import com.example.KavaSpring.security.services.AuthService;
 import com.example.KavaSpring.security.utils.EmailTemplates;
 import com.example.KavaSpring.security.utils.Helper;
 import com.example.KavaSpring.security.utils.JwtUtils;
-import com.example.KavaSpring.services.SendGridEmailService;
-import lombok.AllArgsConstructor;
+import com.example.KavaSpring.security.utils.TokenRevocationRegistry;
+import com.example.KavaSpring.security.utils.UserProfileResolver;
+import com.example.KavaSpring.services.EmailOutboxService;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.ResponseCookie;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -31,13 +39,14 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Service
 @Slf4j
 @Transactional
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class AuthServiceImpl implements AuthService {
 
     private final AuthenticationManager authenticationManager;
@@ -52,7 +61,13 @@ public class AuthServiceImpl implements AuthService {
 
     private final VerificationInvitationRepository verificationInvitationRepository;
 
-    private final SendGridEmailService sendGridEmailService;
+    private final EmailOutboxService emailOutboxService;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+
+    private final UserProfileResolver userProfileResolver;
 
     @Value("${BACKEND_URL}")
     private String BACKEND_URL;
@@ -60,6 +75,9 @@ public class AuthServiceImpl implements AuthService {
     @Value("${EMAIL_FROM}")
     private String EMAIL_FROM;
 
+    @Value("${verificationResendIntervalMs:120000}")
+    private long verificationResendIntervalMs;
+
     @Override
     public UserDto fetchMe() {
         log.info("Fetch me started");
@@ -67,7 +85,7 @@ public class AuthServiceImpl implements AuthService {
         UserDto userDto = new UserDto();
 
         if (authentication != null && authentication.getPrincipal() != null && authentication.getPrincipal() instanceof UserDetailsImpl) {
-             UserProfile userProfile = userProfileRepository.getUserProfileByUserId(((UserDetailsImpl) authentication.getPrincipal()).getId());
+             UserProfile userProfile = userProfileResolver.getLoggedInUserProfile();
             if (userProfile != null) {
                 userDto.setUserProfileId(userProfile.getId());
                 userDto.setFirstName(userProfile.getFirstName());
@@ -113,7 +131,7 @@ public class AuthServiceImpl implements AuthService {
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
 
-        String token = jwtUtils.generateJwtToken(authentication);
+        String token = jwtUtils.generateJwtToken(authentication, userProfile);
 
         ResponseCookie cookie = jwtUtils.createJwtCookie(token);
 
@@ -145,28 +163,64 @@ public class AuthServiceImpl implements AuthService {
 
     @Override
     public void sendVerificationEmail(User user) {
-
-        String verificationCode = Helper.generateRandomString();
-        VerificationInvitation invitation = new VerificationInvitation();
-        invitation.setVerificationCode(verificationCode);
-        invitation.setEmail(user.getEmail());
-
-        verificationInvitationRepository.save(invitation);
+        LocalDateTime now = LocalDateTime.now();
+
+        //? the resend is throttled on lastSentAt alone, a resend also extends the invitation so the mailed link stays valid
+        Query resendableInvitation = new Query(Criteria.where("email").is(user.getEmail())
+                .and("active").is(true)
+                .orOperator(
+                        Criteria.where("lastSentAt").lt(now.minus(verificationResendInterval())),
+                        Criteria.where("lastSentAt").exists(false)
+                ));
+
+        VerificationInvitation invitation = mongoTemplate.findAndModify(
+                resendableInvitation,
+                new Update().set("lastSentAt", now).set("expiresAt", now.plus(VerificationInvitation.VALIDITY)),
+                FindAndModifyOptions.options().returnNew(true),
+                VerificationInvitation.class
+        );
+
+        if (invitation == null) {
+            invitation = new VerificationInvitation();
+            invitation.setVerificationCode(Helper.generateRandomString());
+            invitation.setEmail(user.getEmail());
+            invitation.setLastSentAt(now);
+            invitation.setExpiresAt(now.plus(VerificationInvitation.VALIDITY));
+
+            //? the unique index on active invitations turns a recent send or a concurrent first login into a duplicate key
+            try {
+                verificationInvitationRepository.insert(invitation);
+            } catch (DuplicateKeyException e) {
+                log.info("Verification email for user {} was sent recently, resend throttled", user.getId());
+                return;
+            }
+        }
 
         String verificationUrl = BACKEND_URL + "/api/auth/verify?invitationId=" + invitation.getId()
-                + "&verificationCode=" + verificationCode
+                + "&verificationCode=" + invitation.getVerificationCode()
                 + "&userId=" + user.getId();
         //log.info("The verification url: " + verificationUrl);
 
-        //? sending the email
-        sendGridEmailService.sendHtml(EMAIL_FROM, user.getEmail(), "Verification email", EmailTemplates.confirmationEmail(user.getEmail(), verificationUrl));
+        //? the email is written to the outbox and sent in the background
+        //? the invitation is written first and the two writes are not atomic: if the node dies in between no email goes out,
+        //? the next login after the resend interval sends one again; the reverse order could mail a link to an unsaved invitation
+        emailOutboxService.enqueueHtml(EMAIL_FROM, user.getEmail(), "Verification email", EmailTemplates.confirmationEmail(user.getEmail(), verificationUrl));
 
     }
 
+    private Duration verificationResendInterval() {
+        return Duration.ofMillis(verificationResendIntervalMs);
+    }
+
     @Override
     public void verifyUser(String invitationId, String verificationCode) {
         VerificationInvitation invitation = verificationInvitationRepository.findByIdAndVerificationCode(invitationId, verificationCode);
 
+        //? expired invitations are purged by the TTL index
+        if (invitation == null) {
+            throw new IllegalStateException("Invitation not found or expired.");
+        }
+
         if (!invitation.isActive()) {
             throw new IllegalStateException("Invitation was already activated.");
         }
@@ -190,4 +244,16 @@ public class AuthServiceImpl implements AuthService {
 
     }
 
+    //? every token of the user issued up to now is rejected, on all instances
+    @Override
+    public void logout() {
+        String userId = Helper.getLoggedInUserId();
+        if (userId == null) {
+            throw new IllegalStateException("No logged in user");
+        }
+        tokenRevocationRegistry.revokeUser(userId);
+        SecurityContextHolder.clearContext();
+        log.info("User {} logged out", userId);
+    }
+
 }
@@ -1,6 +1,7 @@
 package com.example.KavaSpring.security.services.impl;
 
 import com.example.KavaSpring.models.dao.User;
+import io.jsonwebtoken.Claims;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -19,12 +20,30 @@ public class UserDetailsImpl implements UserDetails {
     private String id;
     private String email;
     private String password;
+    private String userProfileId;
+    private String groupId;
+    private boolean verified;
 
     public static UserDetailsImpl build(User user) {
         return new UserDetailsImpl(
                 user.getId(),
                 user.getEmail(),
-                user.getPassword()
+                user.getPassword(),
+                null,
+                null,
+                user.isVerified()
+        );
+    }
+
+    //? builds the principal purely from the signed token claims, no password is available here
+    public static UserDetailsImpl fromClaims(Claims claims) {
+        return new UserDetailsImpl(
+                claims.get("userId", String.class),
+                claims.getSubject(),
+                null,
+                claims.get("userProfileId", String.class),
+                claims.get("groupId", String.class),
+                Boolean.TRUE.equals(claims.get("verified", Boolean.class))
         );
     }
 
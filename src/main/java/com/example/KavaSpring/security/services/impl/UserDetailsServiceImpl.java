@@ -5,6 +5,7 @@ import com.example.KavaSpring.repository.UserRepository;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -14,7 +15,7 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 @AllArgsConstructor
 @Slf4j
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
 
@@ -29,4 +30,16 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         }
         return UserDetailsImpl.build(user);
     }
+
+    //? called by the authentication provider after a successful login when the stored hash uses an outdated cost factor
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        String email = ((UserDetailsImpl) userDetails).getEmail();
+        User user = userRepository.findByEmail(email).orElseThrow(() -> new UsernameNotFoundException("User not found with email" + email));
+        user.setPassword(newPassword);
+        userRepository.save(user);
+
+        log.info("Password hash upgraded for user: {}", user.getId());
+        return UserDetailsImpl.build(user);
+    }
 }
@@ -9,6 +9,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 
 @Slf4j
 public class Helper {
+
     public static SimpleIdEmailDto getLoggedSimpleUserIdEmail() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.getPrincipal() != null && authentication.getPrincipal() instanceof UserDetailsImpl userDetails) {
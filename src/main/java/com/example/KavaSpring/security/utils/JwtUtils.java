@@ -1,9 +1,14 @@
 package com.example.KavaSpring.security.utils;
 
+import com.example.KavaSpring.models.dao.UserProfile;
 import com.example.KavaSpring.security.services.impl.UserDetailsImpl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
@@ -15,9 +20,13 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.util.WebUtils;
 
 import javax.crypto.SecretKey;
-import java.security.Key;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtils {
@@ -33,7 +42,43 @@ public class JwtUtils {
     @Value("${jwtCookieName}")
     private String jwtCookieName;
 
-    public String generateJwtToken(Authentication authentication) {
+    @Value("${jwtCacheMaxSize:10000}")
+    private long jwtCacheMaxSize;
+
+    private SecretKey key;
+
+    private JwtParser parser;
+
+    //? already verified tokens keyed by their SHA-256 hash, every entry lives until the token's exp claim
+    private Cache<String, Claims> verifiedTokens;
+
+    @PostConstruct
+    void init() {
+        key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        parser = Jwts.parser().verifyWith(key).build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(jwtCacheMaxSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String tokenHash, Claims claims, long currentTime) {
+                        long remainingMs = claims.getExpiration().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMs, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String tokenHash, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String tokenHash, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    public String generateJwtToken(Authentication authentication, UserProfile userProfile) {
 
         UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
 
@@ -42,25 +87,16 @@ public class JwtUtils {
                 .subject(userPrincipal.getEmail())
                 .issuedAt(new Date())
                 .expiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(key())
-                .addClaims(Map.of(
-                        "userId", userPrincipal.getId()
+                .signWith(key)
+                .claims(Map.of(
+                        "userId", userPrincipal.getId(),
+                        "userProfileId", userProfile.getId(),
+                        "groupId", userProfile.getGroupId(),
+                        "verified", userPrincipal.isVerified()
                 ))
                 .compact();
     }
 
-    private Key key() {
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
-    }
-
-    public Claims getEmailFromJwtToken(String token) {
-        return Jwts.parser()
-                .verifyWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret)))
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-    }
-
     public ResponseCookie createJwtCookie(String token) {
         return ResponseCookie.from(jwtCookieName, token)
                 .httpOnly(true)
@@ -71,15 +107,42 @@ public class JwtUtils {
                 .build();
     }
 
+    public ResponseCookie createCleanJwtCookie() {
+        return ResponseCookie.from(jwtCookieName, "")
+                .httpOnly(true)
+                .secure(false)
+                .sameSite("None")
+                .path("/")
+                .maxAge(0)
+                .build();
+    }
+
     public String getJwtFromCookies(HttpServletRequest request) {
         Cookie cookie = WebUtils.getCookie(request, jwtCookieName);
         return cookie != null ? cookie.getValue() : null;
     }
 
-    public boolean validateToken(String token) {
+    /**
+     * Verifies the token once and returns its claims, or null when the token is not valid.
+     * Tokens that were already verified are served from the cache until they expire.
+     */
+    public Claims parseAndValidateToken(String token) {
+        String tokenHash = hash(token);
+
+        Claims cached = verifiedTokens.getIfPresent(tokenHash);
+        if (cached != null) {
+            if (cached.getExpiration().after(new Date())) {
+                return cached;
+            }
+            verifiedTokens.invalidate(tokenHash);
+        }
+
         try {
-            Jwts.parser().verifyWith((SecretKey) key()).build().parse(token);
-            return true;
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            if (claims.getExpiration() != null) {
+                verifiedTokens.put(tokenHash, claims);
+            }
+            return claims;
         } catch (MalformedJwtException e) {
             logger.error("Invalid JWT token: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
@@ -88,7 +151,18 @@ public class JwtUtils {
             logger.error("JWT token is unsupported: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string is empty: {}", e.getMessage());
+        } catch (JwtException e) {
+            logger.error("JWT token verification failed: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
-        return false;
     }
 }
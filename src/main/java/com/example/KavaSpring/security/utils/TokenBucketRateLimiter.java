@@ -0,0 +1,69 @@
+package com.example.KavaSpring.security.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free token buckets keyed by an arbitrary string.
+ * Memory is bounded by maxKeys and buckets that were idle for the eviction period are dropped.
+ */
+public class TokenBucketRateLimiter {
+
+    private final long capacity;
+
+    private final double refillPerNano;
+
+    private final Cache<String, TokenBucket> buckets;
+
+    public TokenBucketRateLimiter(long capacity, long refillPerMinute, long maxKeys, Duration idleEviction) {
+        this.capacity = capacity;
+        this.refillPerNano = (double) refillPerMinute / TimeUnit.MINUTES.toNanos(1);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(idleEviction)
+                .build();
+    }
+
+    public boolean tryAcquire(String key) {
+        return buckets.get(key, k -> new TokenBucket()).tryConsume();
+    }
+
+    //? time until the next token of the key's bucket is available, zero if one is available now
+    public Duration timeUntilAvailable(String key) {
+        TokenBucket bucket = buckets.getIfPresent(key);
+        return bucket == null ? Duration.ZERO : bucket.timeUntilAvailable();
+    }
+
+    private record State(double tokens, long refilledAt) {
+    }
+
+    private class TokenBucket {
+
+        private final AtomicReference<State> state = new AtomicReference<>(new State(capacity, System.nanoTime()));
+
+        boolean tryConsume() {
+            while (true) {
+                State current = state.get();
+                long now = System.nanoTime();
+                double tokens = Math.min(capacity, current.tokens() + (now - current.refilledAt()) * refillPerNano);
+
+                if (tokens < 1) {
+                    return false;
+                }
+                if (state.compareAndSet(current, new State(tokens - 1, now))) {
+                    return true;
+                }
+            }
+        }
+
+        Duration timeUntilAvailable() {
+            State current = state.get();
+            double tokens = Math.min(capacity, current.tokens() + (System.nanoTime() - current.refilledAt()) * refillPerNano);
+            return tokens >= 1 ? Duration.ZERO : Duration.ofNanos((long) Math.ceil((1 - tokens) / refillPerNano));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.KavaSpring.security.utils;
+
+import com.example.KavaSpring.models.dao.TokenRevocation;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * Revocation watermarks for claim based authentication, stored in Mongo so every instance sees them.
+ * Lookups are cached for a short time, a revocation reaches the other instances within revocationCacheTtlMs.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class TokenRevocationRegistry {
+
+    //? cached when the user has no revocation, so the common case is not a database read per request
+    private static final long NOT_REVOKED = 0L;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${jwtExpirationMs}")
+    private int jwtExpirationMs;
+
+    @Value("${revocationCacheTtlMs:5000}")
+    private long revocationCacheTtlMs;
+
+    @Value("${revocationCacheMaxSize:10000}")
+    private long revocationCacheMaxSize;
+
+    //? userId -> revocation epoch millis, truncated to whole seconds like the iat claim
+    private Cache<String, Long> revocationEpochs;
+
+    @PostConstruct
+    void init() {
+        revocationEpochs = Caffeine.newBuilder()
+                .maximumSize(revocationCacheMaxSize)
+                .expireAfterWrite(Duration.ofMillis(revocationCacheTtlMs))
+                .build();
+    }
+
+    //? iat has second precision, a token issued later in the same second as the revocation stays valid
+    public void revokeUser(String userId) {
+        long now = truncateToSeconds(System.currentTimeMillis());
+        Update update = new Update()
+                .max("revokedAt", now)
+                .max("expiresAt", LocalDateTime.now().plus(Duration.ofMillis(jwtExpirationMs)));
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(userId)), update, TokenRevocation.class);
+
+        revocationEpochs.put(userId, now);
+        log.info("Tokens revoked for user: {}", userId);
+    }
+
+    public boolean isRevoked(String userId, Date issuedAt) {
+        long epoch = revocationEpochs.get(userId, this::loadEpoch);
+        if (epoch == NOT_REVOKED) {
+            return false;
+        }
+        return issuedAt == null || issuedAt.getTime() < epoch;
+    }
+
+    private long loadEpoch(String userId) {
+        TokenRevocation revocation = mongoTemplate.findById(userId, TokenRevocation.class);
+        return revocation != null ? truncateToSeconds(revocation.getRevokedAt()) : NOT_REVOKED;
+    }
+
+    private static long truncateToSeconds(long epochMillis) {
+        return epochMillis - epochMillis % 1000;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.KavaSpring.security.utils;
+
+import com.example.KavaSpring.models.dao.UserProfile;
+import com.example.KavaSpring.repository.UserProfileRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+
+/**
+ * Resolves the UserProfile of the logged-in user at most once per request.
+ * Resolved profiles are kept in a short-lived per-node cache, every request gets its own copy of the cached profile.
+ * Writes to a profile must evict it, other nodes see the change once their entry expires.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class UserProfileResolver {
+
+    private static final String REQUEST_ATTRIBUTE = UserProfileResolver.class.getName() + ".userProfile";
+
+    private final UserProfileRepository userProfileRepository;
+
+    @Value("${userProfileCacheTtlMs:30000}")
+    private long cacheTtlMs;
+
+    @Value("${userProfileCacheMaxSize:10000}")
+    private long cacheMaxSize;
+
+    private Cache<String, UserProfile> userProfiles;
+
+    @PostConstruct
+    void init() {
+        userProfiles = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMs))
+                .build();
+    }
+
+    public UserProfile getLoggedInUserProfile() {
+        return resolve(Helper.getLoggedInUserId());
+    }
+
+    public UserProfile resolve(String userId) {
+        if (userId == null) {
+            return null;
+        }
+
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null && attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof UserProfile resolved
+                && userId.equals(resolved.getUserId())) {
+            return resolved;
+        }
+
+        UserProfile userProfile = userProfiles.getIfPresent(userId);
+        if (userProfile == null) {
+            userProfile = userProfileRepository.getUserProfileByUserId(userId);
+            if (userProfile != null) {
+                userProfiles.put(userId, userProfile);
+            }
+        }
+
+        //? the cached instance never leaves the resolver
+        if (userProfile != null) {
+            UserProfile copy = new UserProfile();
+            BeanUtils.copyProperties(userProfile, copy);
+            userProfile = copy;
+        }
+
+        if (attributes != null && userProfile != null) {
+            attributes.setAttribute(REQUEST_ATTRIBUTE, userProfile, RequestAttributes.SCOPE_REQUEST);
+        }
+        return userProfile;
+    }
+
+    //? used by writes that touch many profiles at once and only know the group, e.g. the score reconciliation
+    public void evictGroup(String groupId) {
+        userProfiles.asMap().values().removeIf(userProfile -> groupId.equals(userProfile.getGroupId()));
+    }
+
+    public void evict(String userId) {
+        userProfiles.invalidate(userId);
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.removeAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.KavaSpring.services;
+
+import com.example.KavaSpring.models.dao.Event;
+import com.example.KavaSpring.models.enums.EventStatus;
+
+import java.util.List;
+
+public interface ActiveEventRegistry {
+    boolean isActive(EventStatus status);
+    void put(Event event);
+    List<Event> findByGroupId(String groupId);
+    void refresh();
+}
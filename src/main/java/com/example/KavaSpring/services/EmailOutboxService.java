@@ -0,0 +1,6 @@
+package com.example.KavaSpring.services;
+
+public interface EmailOutboxService {
+    void enqueueHtml(String from, String to, String subject, String body);
+    void dispatchPending();
+}
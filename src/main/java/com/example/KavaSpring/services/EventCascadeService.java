@@ -0,0 +1,11 @@
+package com.example.KavaSpring.services;
+
+import com.example.KavaSpring.models.dao.Event;
+import com.example.KavaSpring.models.enums.EventStatus;
+
+public interface EventCascadeService {
+    boolean cascades(EventStatus status);
+    Event closeEvent(String eventId, EventStatus status);
+    void retryPendingCascades();
+    long backfillEventOutcomes();
+}
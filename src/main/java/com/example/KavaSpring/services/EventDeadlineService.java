@@ -0,0 +1,9 @@
+package com.example.KavaSpring.services;
+
+import java.time.LocalDateTime;
+
+public interface EventDeadlineService {
+    void schedule(String eventId, LocalDateTime pendingUntil);
+    int scheduleUpcoming(LocalDateTime until);
+    boolean startEvent(String eventId, LocalDateTime pendingUntil);
+}
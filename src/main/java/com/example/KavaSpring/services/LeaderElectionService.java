@@ -0,0 +1,8 @@
+package com.example.KavaSpring.services;
+
+public interface LeaderElectionService {
+    boolean isLeader();
+    long getFencingToken();
+    long getCurrentFencingToken();
+    void renewLease();
+}
@@ -1,18 +1,22 @@
 package com.example.KavaSpring.services;
 
 import com.example.KavaSpring.models.dto.*;
+import com.example.KavaSpring.models.enums.ExportFormat;
 import com.example.KavaSpring.models.enums.OrderStatus;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
 public interface OrderService {
     OrderResponse createOrder(OrderRequest request);
     OrderDto getOrderById(String id);
-    List<OrderEventInfoDto> getAllOrdersFromUserProfile();
-    List<OrderActivityResponse> getOrdersByActivityStatus(boolean isActive);
+    PageResponse<OrderEventInfoDto> getAllOrdersFromUserProfile(KeysetPageRequest page);
+    StreamingResponseBody exportOrders(ExportFormat format);
+    PageResponse<OrderActivityResponse> getOrdersByActivityStatus(boolean isActive, KeysetPageRequest page);
     String updateOrderStatus(String id, OrderStatus status);
     String updateAllOrdersStatus(String id, OrderStatus status);
+    OrderBulkStatusResponse bulkUpdateOrdersStatus(OrderBulkStatusRequest request);
     List<OrderExpandedResponse> getActiveOrdersByEventId(String id);
     String rateOrder(String id, int rating);
-    List<OrderSearchResponse> searchOrders(OrderSearchRequest request);
+    PageResponse<OrderSearchResponse> searchOrders(OrderSearchRequest request);
 }
@@ -0,0 +1,6 @@
+package com.example.KavaSpring.services;
+
+public interface ReferenceMigrationService {
+    void migrateReferences();
+    long migrateField(String collection, String field);
+}
@@ -0,0 +1,7 @@
+package com.example.KavaSpring.services;
+
+public interface ScoreReconciliationService {
+    void reconcileAllGroups();
+    int reconcileGroup(String groupId);
+    int backfillMissingCounters();
+}
@@ -1,10 +1,14 @@
 package com.example.KavaSpring.services;
 
+import com.example.KavaSpring.models.dto.EmailDispatchResult;
 import com.sendgrid.Response;
 import com.sendgrid.helpers.mail.objects.Content;
 
+import java.util.List;
+
 public interface SendGridEmailService {
 
     Response sendEmail(String from, String to, String subject, Content content);
     void sendHtml(String from, String to, String subject, String body);
+    List<EmailDispatchResult> sendBatch(String from, List<String> recipients, String subject, Content content);
 }
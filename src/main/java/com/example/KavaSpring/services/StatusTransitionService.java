@@ -0,0 +1,14 @@
+package com.example.KavaSpring.services;
+
+import com.example.KavaSpring.models.dao.Event;
+import com.example.KavaSpring.models.dao.Order;
+import com.example.KavaSpring.models.enums.EventStatus;
+import com.example.KavaSpring.models.enums.OrderStatus;
+
+import java.util.Set;
+
+public interface StatusTransitionService {
+    Event transitionEvent(String eventId, EventStatus target);
+    Order transitionOrder(String orderId, OrderStatus target);
+    Set<OrderStatus> orderSourcesOf(OrderStatus target);
+}
@@ -1,6 +1,8 @@
 package com.example.KavaSpring.services;
 
 import com.example.KavaSpring.models.dto.GroupMemberResponse;
+import com.example.KavaSpring.models.dto.KeysetPageRequest;
+import com.example.KavaSpring.models.dto.PageResponse;
 import com.example.KavaSpring.models.dto.UserProfileDto;
 import com.example.KavaSpring.models.dto.UserProfileRequest;
 import com.example.KavaSpring.models.dto.UserProfileResponse;
@@ -16,6 +18,6 @@ public interface UserProfileService {
     UserProfileDto getProfileById(String id);
     byte[] downloadUserProfilePhoto() throws IOException;
     String editUserProfile(String firstName, String lastName, MultipartFile photoFile);
-    List<GroupMemberResponse> getGroupMembers(SortCondition condition);
+    PageResponse<GroupMemberResponse> getGroupMembers(SortCondition condition, KeysetPageRequest page);
     void calculateScore();
 }
@@ -0,0 +1,113 @@
+package com.example.KavaSpring.services.impl;
+
+import com.example.KavaSpring.models.dao.Event;
+import com.example.KavaSpring.models.enums.EventStatus;
+import com.example.KavaSpring.services.ActiveEventRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of the PENDING and IN_PROGRESS events, keyed by groupId.
+ * Local writes update it directly, the periodic refresh picks up changes made by other instances, so a change made on
+ * another node is visible here only after up to activeEventRefreshMs plus the duration of the reload.
+ * Each group is an immutable snapshot that a write replaces on its own, a reload swaps the map of all groups at once and
+ * keeps the local writes made while it was running.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ActiveEventRegistryImpl implements ActiveEventRegistry {
+
+    private static final Set<EventStatus> ACTIVE_STATUSES = Set.of(EventStatus.PENDING, EventStatus.IN_PROGRESS);
+
+    private record LocalWrite(Event event, long sequence) {
+    }
+
+    private final MongoTemplate mongoTemplate;
+
+    private volatile Map<String, Map<String, Event>> eventsByGroup = new ConcurrentHashMap<>();
+
+    //? local writes not yet known to be part of a reload, keyed by event id
+    private final Map<String, LocalWrite> localWrites = new HashMap<>();
+
+    private long writeSequence;
+
+    @Override
+    public boolean isActive(EventStatus status) {
+        return ACTIVE_STATUSES.contains(status);
+    }
+
+    //? only the group of the event is copied, the map of groups is updated in place
+    @Override
+    public synchronized void put(Event event) {
+        if (event.getGroupId() == null) {
+            log.warn("Event {} has no groupId and is not tracked", event.getId());
+            return;
+        }
+        localWrites.put(event.getId(), new LocalWrite(event, ++writeSequence));
+        apply(eventsByGroup, event);
+    }
+
+    @Override
+    public List<Event> findByGroupId(String groupId) {
+        Map<String, Event> events = groupId == null ? null : eventsByGroup.get(groupId);
+        return events == null ? List.of() : new ArrayList<>(events.values());
+    }
+
+    //? a full reload of the active events is one indexed query, it replaces every group at once
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${activeEventRefreshMs:5000}", initialDelayString = "${activeEventRefreshMs:5000}")
+    @Override
+    public void refresh() {
+        //? local writes up to here hit the database before the query runs, so the reload already contains them
+        long loadedThrough;
+        synchronized (this) {
+            loadedThrough = writeSequence;
+        }
+
+        List<Event> events = mongoTemplate.find(new Query(Criteria.where("status").in(ACTIVE_STATUSES)), Event.class);
+
+        Map<String, Map<String, Event>> grouped = new HashMap<>();
+        events.stream()
+                .filter(event -> event.getGroupId() != null)
+                .forEach(event -> grouped.computeIfAbsent(event.getGroupId(), groupId -> new HashMap<>()).put(event.getId(), event));
+        Map<String, Map<String, Event>> loaded = new ConcurrentHashMap<>();
+        grouped.forEach((groupId, groupEvents) -> loaded.put(groupId, Map.copyOf(groupEvents)));
+
+        synchronized (this) {
+            localWrites.values().removeIf(write -> write.sequence() <= loadedThrough);
+            localWrites.values().forEach(write -> apply(loaded, write.event()));
+            eventsByGroup = loaded;
+        }
+        log.debug("Active event registry refreshed with {} events", events.size());
+    }
+
+    private void apply(Map<String, Map<String, Event>> groups, Event event) {
+        Map<String, Event> events = new HashMap<>(groups.getOrDefault(event.getGroupId(), Map.of()));
+        if (isActive(event.getStatus())) {
+            events.put(event.getId(), event);
+        } else {
+            events.remove(event.getId());
+        }
+
+        if (events.isEmpty()) {
+            groups.remove(event.getGroupId());
+        } else {
+            groups.put(event.getGroupId(), Map.copyOf(events));
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.KavaSpring.services.impl;
+
+import com.example.KavaSpring.models.dao.EmailOutbox;
+import com.example.KavaSpring.models.dto.EmailDispatchResult;
+import com.example.KavaSpring.models.enums.EmailStatus;
+import com.example.KavaSpring.repository.EmailOutboxRepository;
+import com.example.KavaSpring.services.EmailOutboxService;
+import com.example.KavaSpring.services.SendGridEmailService;
+import com.sendgrid.helpers.mail.objects.Content;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class EmailOutboxServiceImpl implements EmailOutboxService {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+
+    private final SendGridEmailService sendGridEmailService;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${emailOutboxWorkers:4}")
+    private int workers;
+
+    @Value("${emailOutboxMaxAttempts:8}")
+    private int maxAttempts;
+
+    @Value("${emailOutboxBaseBackoffMs:2000}")
+    private long baseBackoffMs;
+
+    @Value("${emailOutboxMaxBackoffMs:3600000}")
+    private long maxBackoffMs;
+
+    @Value("${emailOutboxLockMs:60000}")
+    private long lockMs;
+
+    //? messages sharing their content that are claimed together and sent in one call
+    @Value("${emailOutboxBatchSize:500}")
+    private int batchSize;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                workers,
+                workers,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "email-outbox-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public void enqueueHtml(String from, String to, String subject, String body) {
+        EmailOutbox email = new EmailOutbox();
+        email.setFrom(from);
+        email.setTo(to);
+        email.setSubject(subject);
+        email.setBody(body);
+        email.setBatchKey(DigestUtils.md5DigestAsHex((from + '\0' + subject + '\0' + body).getBytes(StandardCharsets.UTF_8)));
+        emailOutboxRepository.save(email);
+
+        log.info("Email \"{}\" queued for {}", subject, to);
+    }
+
+    //? claims only as many batches as there are free workers, the rest stays in the outbox for the next poll
+    @Scheduled(fixedDelayString = "${emailOutboxPollMs:1000}")
+    @Override
+    public void dispatchPending() {
+        int capacity = executor.getMaximumPoolSize() - executor.getActiveCount() + executor.getQueue().remainingCapacity();
+
+        for (int i = 0; i < capacity; i++) {
+            List<EmailOutbox> batch = claimNextBatch();
+            if (batch.isEmpty()) {
+                return;
+            }
+            executor.execute(() -> send(batch));
+        }
+    }
+
+    private List<EmailOutbox> claimNextBatch() {
+        LocalDateTime now = LocalDateTime.now();
+
+        Criteria pending = Criteria.where("status").is(EmailStatus.PENDING).and("nextAttemptAt").lte(now);
+        Criteria abandoned = Criteria.where("status").is(EmailStatus.SENDING).and("lockedUntil").lt(now);
+        Query query = new Query(new Criteria().orOperator(pending, abandoned))
+                .with(Sort.by(Sort.Direction.ASC, "nextAttemptAt"));
+
+        Update update = new Update()
+                .set("status", EmailStatus.SENDING)
+                .set("lockedUntil", now.plusNanos(TimeUnit.MILLISECONDS.toNanos(lockMs)))
+                .set("lockedBy", UUID.randomUUID().toString());
+
+        EmailOutbox first = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), EmailOutbox.class);
+        if (first == null) {
+            return List.of();
+        }
+        if (first.getBatchKey() == null || batchSize <= 1) {
+            return List.of(first);
+        }
+
+        //? due messages with the same content join the claim under its lock token
+        Query companions = new Query(Criteria.where("batchKey").is(first.getBatchKey())
+                .and("from").is(first.getFrom())
+                .and("subject").is(first.getSubject())
+                .orOperator(pending, abandoned))
+                .limit(batchSize - 1);
+        companions.fields().include("_id");
+
+        List<Object> ids = new ArrayList<>();
+        ids.add(first.getId());
+        mongoTemplate.find(companions, Document.class, "emailOutbox").forEach(companion -> ids.add(companion.get("_id")));
+        if (ids.size() == 1) {
+            return List.of(first);
+        }
+
+        mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(ids.subList(1, ids.size())).orOperator(pending, abandoned)), update, EmailOutbox.class);
+        return mongoTemplate.find(new Query(Criteria.where("_id").in(ids).and("lockedBy").is(first.getLockedBy())), EmailOutbox.class);
+    }
+
+    private void send(List<EmailOutbox> batch) {
+        EmailOutbox first = batch.get(0);
+        List<EmailDispatchResult> results;
+        try {
+            results = sendGridEmailService.sendBatch(first.getFrom(), batch.stream().map(EmailOutbox::getTo).toList(),
+                    first.getSubject(), new Content("text/html", first.getBody()));
+        } catch (RuntimeException e) {
+            batch.forEach(email -> markFailed(email, e.getMessage()));
+            return;
+        }
+
+        //? results come back in the order of the recipients
+        for (int i = 0; i < batch.size(); i++) {
+            EmailDispatchResult result = results.get(i);
+            if (result.isAccepted()) {
+                markSent(batch.get(i));
+            } else {
+                markFailed(batch.get(i), "Status code " + result.getStatusCode() + ": " + result.getError());
+            }
+        }
+    }
+
+    private void markSent(EmailOutbox email) {
+        Update update = new Update()
+                .set("status", EmailStatus.SENT)
+                .set("sentAt", LocalDateTime.now())
+                .inc("attempts", 1)
+                .unset("lockedUntil")
+                .unset("lockedBy")
+                .unset("lastError");
+
+        if (completeClaim(email, update)) {
+            log.info("Email \"{}\" sent to {}", email.getSubject(), email.getTo());
+        }
+    }
+
+    private void markFailed(EmailOutbox email, String error) {
+        int attempts = email.getAttempts() + 1;
+        Update update = new Update()
+                .set("attempts", attempts)
+                .set("lastError", error)
+                .unset("lockedUntil")
+                .unset("lockedBy");
+
+        if (attempts >= maxAttempts) {
+            update.set("status", EmailStatus.DEAD);
+            log.error("Email \"{}\" to {} moved to dead letter after {} attempts: {}", email.getSubject(), email.getTo(), attempts, error);
+        } else {
+            //? exponential backoff: base, 2 * base, 4 * base ... capped at maxBackoffMs
+            long backoffMs = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempts - 1, 30));
+            update.set("status", EmailStatus.PENDING)
+                    .set("nextAttemptAt", LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(backoffMs)));
+            log.warn("Email \"{}\" to {} failed (attempt {}), retrying in {} ms: {}", email.getSubject(), email.getTo(), attempts, backoffMs, error);
+        }
+
+        completeClaim(email, update);
+    }
+
+    //? a claim whose lock expired may have been taken over by another worker, its outcome is then dropped
+    private boolean completeClaim(EmailOutbox email, Update update) {
+        Query query = new Query(Criteria.where("_id").is(email.getId())
+                .and("status").is(EmailStatus.SENDING)
+                .and("lockedBy").is(email.getLockedBy()));
+
+        if (mongoTemplate.updateFirst(query, update, EmailOutbox.class).getMatchedCount() == 0) {
+            log.warn("Email \"{}\" to {} lost its lock before the outcome was recorded", email.getSubject(), email.getTo());
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.KavaSpring.services.impl;
+
+import com.example.KavaSpring.config.leader.LeaderOnly;
+import com.example.KavaSpring.exceptions.IllegalStatusTransitionException;
+import com.example.KavaSpring.exceptions.NotFoundException;
+import com.example.KavaSpring.models.dao.Event;
+import com.example.KavaSpring.models.dao.EventCascade;
+import com.example.KavaSpring.models.dao.Order;
+import com.example.KavaSpring.models.enums.EventStatus;
+import com.example.KavaSpring.models.enums.OrderStatus;
+import com.example.KavaSpring.services.EventCascadeService;
+import com.example.KavaSpring.services.StatusTransitionService;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes an event and its orders with a fixed number of writes: cascade record, event, two updateMulti on the orders, record done.
+ * Without a transaction the record is what makes the cascade recoverable, the retry job finishes records that were left open.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class EventCascadeServiceImpl implements EventCascadeService {
+
+    private static final Map<EventStatus, OrderStatus> ORDER_STATUS_FOR_EVENT = Map.of(
+            EventStatus.COMPLETED, OrderStatus.READY,
+            EventStatus.CANCELLED, OrderStatus.CANCELLED
+    );
+
+    private final MongoTemplate mongoTemplate;
+
+    private final StatusTransitionService statusTransitionService;
+
+    //? records younger than this may still be in flight on another request
+    @Value("${eventCascadeRetryAfterMs:60000}")
+    private long retryAfterMs;
+
+    @Value("${eventOutcomeBackfillBatchSize:500}")
+    private int backfillBatchSize;
+
+    @Override
+    public boolean cascades(EventStatus status) {
+        return ORDER_STATUS_FOR_EVENT.containsKey(status);
+    }
+
+    @Override
+    public Event closeEvent(String eventId, EventStatus status) {
+        OrderStatus orderStatus = ORDER_STATUS_FOR_EVENT.get(status);
+        if (orderStatus == null) {
+            throw new IllegalStatusTransitionException("Event can not be closed with " + status);
+        }
+
+        EventCascade cascade = new EventCascade();
+        cascade.setEventId(eventId);
+        cascade.setEventStatus(status);
+        cascade.setOrderStatus(orderStatus);
+        mongoTemplate.insert(cascade);
+
+        Event event;
+        try {
+            event = statusTransitionService.transitionEvent(eventId, status);
+        } catch (IllegalStatusTransitionException | NotFoundException e) {
+            //? compensation, the event was not closed so there is nothing to cascade
+            mongoTemplate.remove(new Query(Criteria.where("_id").is(cascade.getId())), EventCascade.class);
+            throw e;
+        }
+
+        long updated = applyToOrders(cascade, event.getCompletedAt());
+        log.info("Event {} moved to {}, {} orders moved to {}", eventId, status, updated, orderStatus);
+        return event;
+    }
+
+    //? orders placed before eventOutcome existed get it from their closed event, in _id ordered batches of events
+    @Override
+    public long backfillEventOutcomes() {
+        long updated = 0;
+        Object lastId = null;
+
+        while (true) {
+            Criteria criteria = Criteria.where("status").in(ORDER_STATUS_FOR_EVENT.keySet().stream().map(Enum::name).toList());
+            if (lastId != null) {
+                criteria = criteria.and("_id").gt(lastId);
+            }
+            Query query = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "_id")).limit(backfillBatchSize);
+            query.fields().include("_id").include("status");
+
+            List<Document> events = mongoTemplate.find(query, Document.class, "events");
+            if (events.isEmpty()) {
+                log.info("Event outcome backfilled on {} orders", updated);
+                return updated;
+            }
+
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Order.class);
+            for (Document event : events) {
+                bulkOperations.updateMulti(new Query(Criteria.where("eventId").is(event.get("_id")).and("eventOutcome").is(null)),
+                        new Update().set("eventOutcome", event.getString("status")));
+            }
+            updated += bulkOperations.execute().getModifiedCount();
+            lastId = events.get(events.size() - 1).get("_id");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${eventCascadeRetryMs:60000}")
+    @LeaderOnly
+    @Override
+    public void retryPendingCascades() {
+        LocalDateTime olderThan = LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(retryAfterMs));
+        List<EventCascade> cascades = mongoTemplate.find(
+                new Query(Criteria.where("done").is(false).and("createdAt").lt(olderThan)), EventCascade.class);
+
+        for (EventCascade cascade : cascades) {
+            try {
+                retry(cascade);
+            } catch (RuntimeException e) {
+                log.error("Cascade {} of event {} failed again: {}", cascade.getId(), cascade.getEventId(), e.getMessage());
+            }
+        }
+    }
+
+    private void retry(EventCascade cascade) {
+        Query eventQuery = new Query(Criteria.where("_id").is(cascade.getEventId()));
+        eventQuery.fields().include("status").include("completedAt");
+        Event event = mongoTemplate.findOne(eventQuery, Event.class);
+
+        //? the event never reached the status of the record, the close failed before it and left nothing to cascade
+        if (event == null || event.getStatus() != cascade.getEventStatus()) {
+            mongoTemplate.remove(new Query(Criteria.where("_id").is(cascade.getId())), EventCascade.class);
+            return;
+        }
+
+        long updated = applyToOrders(cascade, event.getCompletedAt());
+        log.info("Retried cascade of event {}, {} orders moved to {}", cascade.getEventId(), updated, cascade.getOrderStatus());
+    }
+
+    //? idempotent, only orders still in an allowed source status are changed
+    private long applyToOrders(EventCascade cascade, LocalDateTime completedAt) {
+        LocalDateTime timestamp = completedAt != null ? completedAt : LocalDateTime.now();
+
+        Query ordersQuery = new Query(Criteria.where("eventId").is(cascade.getEventId())
+                .and("status").in(statusTransitionService.orderSourcesOf(cascade.getOrderStatus())));
+        Update ordersUpdate = new Update()
+                .set("status", cascade.getOrderStatus())
+                .set("completedAt", timestamp);
+        UpdateResult result = mongoTemplate.updateMulti(ordersQuery, ordersUpdate, Order.class);
+
+        //? every order of the event carries the outcome, whatever its own status
+        mongoTemplate.updateMulti(new Query(Criteria.where("eventId").is(cascade.getEventId()).and("eventOutcome").is(null)),
+                new Update().set("eventOutcome", cascade.getEventStatus()), Order.class);
+
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(cascade.getId())),
+                new Update().set("done", true).set("doneAt", LocalDateTime.now()), EventCascade.class);
+        return result.getModifiedCount();
+    }
+}
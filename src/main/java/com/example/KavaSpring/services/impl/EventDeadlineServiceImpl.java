@@ -0,0 +1,151 @@
+package com.example.KavaSpring.services.impl;
+
+import com.example.KavaSpring.models.dao.Event;
+import com.example.KavaSpring.models.enums.EventStatus;
+import com.example.KavaSpring.services.ActiveEventRegistry;
+import com.example.KavaSpring.services.EventDeadlineService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves PENDING events to IN_PROGRESS at their pendingUntil deadline.
+ * Deadlines wait in a delay queue and a single worker flips each event with a conditional update when it expires.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class EventDeadlineServiceImpl implements EventDeadlineService {
+
+    private final MongoTemplate mongoTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ActiveEventRegistry activeEventRegistry;
+
+    private final DelayQueue<Deadline> deadlines = new DelayQueue<>();
+
+    //? guards against queueing the same event twice when the periodic sweep reloads upcoming deadlines
+    private final Set<String> scheduledIds = ConcurrentHashMap.newKeySet();
+
+    private Thread worker;
+
+    private Timer lagTimer;
+
+    private record Deadline(String eventId, LocalDateTime pendingUntil, long dueAtNanos) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAtNanos, ((Deadline) other).dueAtNanos);
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("event.deadlines.scheduled", deadlines, DelayQueue::size).register(meterRegistry);
+        lagTimer = Timer.builder("event.deadlines.lag").register(meterRegistry);
+
+        worker = new Thread(this::run, "event-deadlines");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.interrupt();
+    }
+
+    //? every PENDING event is loaded at startup through the (status, pendingUntil) index
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        int scheduled = scheduleUpcoming(null);
+        log.info("Scheduled {} pending event deadlines", scheduled);
+    }
+
+    @Override
+    public void schedule(String eventId, LocalDateTime pendingUntil) {
+        if (eventId == null || pendingUntil == null || !scheduledIds.add(eventId)) {
+            return;
+        }
+        long delayNanos = Duration.between(LocalDateTime.now(), pendingUntil).toNanos();
+        deadlines.put(new Deadline(eventId, pendingUntil, System.nanoTime() + Math.max(delayNanos, 0)));
+    }
+
+    @Override
+    public int scheduleUpcoming(LocalDateTime until) {
+        Criteria criteria = Criteria.where("status").is(EventStatus.PENDING);
+        if (until != null) {
+            criteria = criteria.and("pendingUntil").lte(until);
+        }
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "pendingUntil"));
+        query.fields().include("_id").include("pendingUntil");
+
+        List<Event> events = mongoTemplate.find(query, Event.class);
+        events.forEach(event -> schedule(event.getId(), event.getPendingUntil()));
+        return events.size();
+    }
+
+    //? applies only while the event is still PENDING and its deadline was not moved past the scheduled one
+    @Override
+    public boolean startEvent(String eventId, LocalDateTime pendingUntil) {
+        Query query = new Query(Criteria.where("_id").is(eventId)
+                .and("status").is(EventStatus.PENDING)
+                .and("pendingUntil").lte(pendingUntil));
+        Event event = mongoTemplate.findAndModify(query, new Update().set("status", EventStatus.IN_PROGRESS),
+                FindAndModifyOptions.options().returnNew(true), Event.class);
+        if (event == null) {
+            return false;
+        }
+        activeEventRegistry.put(event);
+        return true;
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Deadline deadline;
+            try {
+                deadline = deadlines.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            scheduledIds.remove(deadline.eventId());
+            lagTimer.record(-deadline.getDelay(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+            try {
+                if (startEvent(deadline.eventId(), deadline.pendingUntil())) {
+                    log.info("Event {} moved to IN_PROGRESS", deadline.eventId());
+                }
+            } catch (RuntimeException e) {
+                log.error("Event {} could not be started: {}", deadline.eventId(), e.getMessage());
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.KavaSpring.services.impl;
 
+import com.example.KavaSpring.config.leader.LeaderOnly;
 import com.example.KavaSpring.converters.ConverterService;
 import com.example.KavaSpring.exceptions.NotFoundException;
 import com.example.KavaSpring.models.dao.Event;
@@ -9,10 +10,17 @@ import com.example.KavaSpring.models.enums.EventStatus;
 import com.example.KavaSpring.models.enums.EventType;
 import com.example.KavaSpring.repository.EventRepository;
 import com.example.KavaSpring.repository.UserProfileRepository;
-import com.example.KavaSpring.security.utils.Helper;
+import com.example.KavaSpring.security.utils.UserProfileResolver;
+import com.example.KavaSpring.services.ActiveEventRegistry;
+import com.example.KavaSpring.services.EventCascadeService;
+import com.example.KavaSpring.services.EventDeadlineService;
 import com.example.KavaSpring.services.EventService;
+import com.example.KavaSpring.services.StatusTransitionService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.*;
@@ -26,10 +34,8 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -37,6 +43,9 @@ import java.util.stream.Collectors;
 @AllArgsConstructor
 public class EventServiceImpl implements EventService {
 
+    //? twice the sweep interval, so a deadline is queued at least one sweep before it is due
+    private static final long EVENT_SWEEP_HORIZON_MINUTES = 20;
+
     private final EventRepository eventRepository;
 
     private final UserProfileRepository userProfileRepository;
@@ -45,20 +54,24 @@ public class EventServiceImpl implements EventService {
 
     private final MongoTemplate mongoTemplate;
 
+    private final EventDeadlineService eventDeadlineService;
+
+    private final ActiveEventRegistry activeEventRegistry;
+
+    private final StatusTransitionService statusTransitionService;
+
+    private final EventCascadeService eventCascadeService;
+
+    private final UserProfileResolver userProfileResolver;
+
     @Override
     public EventResponse createEvent(EventRequest request) {
-        List<EventStatus> activeStatuses = Arrays.asList(EventStatus.PENDING, EventStatus.IN_PROGRESS);
-        UserProfile userProfile = userProfileRepository.getUserProfileByUserId(Helper.getLoggedInUserId());
+        UserProfile userProfile = userProfileResolver.getLoggedInUserProfile();
 
         if (userProfile == null) {
             throw new NotFoundException("No UserProfile associated with the id");
         }
 
-        if (eventRepository.existsByUserProfileIdAndStatusIn(userProfile.getId(), activeStatuses)) {
-            throw new IllegalStateException("User already has an active event (PENDING or IN_PROGRESS)");
-        }
-
-
         Event event = new Event();
         event.setUserProfileId(userProfile.getId());
         event.setTitle(request.getTitle());
@@ -66,7 +79,14 @@ public class EventServiceImpl implements EventService {
         event.setGroupId(userProfile.getGroupId());
         event.setEventType(request.getEventType());
         event.setPendingUntil(LocalDateTime.now().plusMinutes(request.getPendingTime()));
-        eventRepository.save(event);
+        //? a second active event is rejected by the partial unique index on userProfileId
+        try {
+            eventRepository.insert(event);
+        } catch (DuplicateKeyException e) {
+            throw new IllegalStateException("User already has an active event (PENDING or IN_PROGRESS)");
+        }
+        eventDeadlineService.schedule(event.getId(), event.getPendingUntil());
+        activeEventRegistry.put(event);
 
         log.info("Event created");
         return converterService.convertToEventResponse(request);
@@ -82,21 +102,57 @@ public class EventServiceImpl implements EventService {
 
 
     @Override
-    public List<EventExpandedResponse> filterEvents(EventSearchRequest request) {
-        UserProfile userProfile = userProfileRepository.getUserProfileByUserId(Helper.getLoggedInUserId());
+    public PageResponse<EventExpandedResponse> filterEvents(EventSearchRequest request) {
+        UserProfile userProfile = userProfileResolver.getLoggedInUserProfile();
+        EventStatus status = request.getStatus();
+        //? u slucaju da je MIX eventType vratiti ce sve eventove sa bilo kojim EventTypom (FOOD, COFFEE......)
+        EventType eventType = request.getEventType() != null && request.getEventType() != EventType.MIX ? request.getEventType() : null;
+        KeysetPageRequest page = new KeysetPageRequest(request.getCursor(), request.getLimit(), request.isIncludeTotal());
+
+        //? PENDING and IN_PROGRESS events are served from memory, only the history is read from the database
+        List<Event> activeEvents = List.of();
+        if (status == null || activeEventRegistry.isActive(status)) {
+            activeEvents = activeEventRegistry.findByGroupId(userProfile.getGroupId())
+                    .stream()
+                    .filter(event -> status == null || event.getStatus() == status)
+                    .filter(event -> eventType == null || event.getEventType() == eventType)
+                    .filter(event -> !userProfile.getId().equals(event.getUserProfileId()))
+                    .toList();
+        }
+
+        PageResponse<Event> history = null;
+        if (status == null || !activeEventRegistry.isActive(status)) {
+            history = findEventHistory(userProfile, status, eventType, page);
+        }
+
+        return KeysetPagination.mergePage(
+                        activeEvents,
+                        history,
+                        EventServiceImpl::createdAtDate,
+                        event -> new ObjectId(event.getId()),
+                        page)
+                .mapAll(converterService::convertToEventExpandedResponses);
+    }
+
+    private static Date createdAtDate(Event event) {
+        return event.getCreatedAt() == null ? new Date(0) : Date.from(event.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private PageResponse<Event> findEventHistory(UserProfile userProfile, EventStatus status, EventType eventType, KeysetPageRequest page) {
         List<Criteria> criteriaList = new ArrayList<>();
 
-        if (request.getStatus() != null) {
-            criteriaList.add(Criteria.where("status").is(request.getStatus()));
+        if (status != null) {
+            criteriaList.add(Criteria.where("status").is(status));
+        } else {
+            criteriaList.add(Criteria.where("status").nin(EventStatus.PENDING, EventStatus.IN_PROGRESS));
         }
 
-        //? u slucaju da je MIX eventType vratiti ce sve eventove sa bilo kojim EventTypom (FOOD, COFFEE......)
-        if (request.getEventType() != null && request.getEventType() != EventType.MIX) {
-            criteriaList.add(Criteria.where("eventType").is(request.getEventType()));
+        if (eventType != null) {
+            criteriaList.add(Criteria.where("eventType").is(eventType));
         }
 
-        criteriaList.add(Criteria.where("groupId").is(userProfile.getGroupId()));
-        criteriaList.add(Criteria.where("userProfileId").ne(userProfile.getId()));
+        criteriaList.add(Criteria.where("groupId").is(new ObjectId(userProfile.getGroupId())));
+        criteriaList.add(Criteria.where("userProfileId").ne(new ObjectId(userProfile.getId())));
 
         Criteria combinedCriteria = new Criteria().andOperator(criteriaList.toArray(new Criteria[0]));
 
@@ -113,53 +169,48 @@ public class EventServiceImpl implements EventService {
                 .and("createdAt").as("createdAt")
                 .and("pendingUntil").as("pendingUntil");
 
-        SortOperation sortOperation = Aggregation.sort(Sort.by(Sort.Direction.DESC, "createdAt"));
-
-        Aggregation aggregation = Aggregation.newAggregation(
-                matchOperation,
-                projectOperation,
-                sortOperation
+        PageResponse<Document> results = KeysetPagination.aggregatePage(
+                mongoTemplate,
+                "events",
+                List.of(matchOperation),
+                List.of(projectOperation),
+                "createdAt",
+                Sort.Direction.DESC,
+                page
         );
 
-        AggregationResults<Event> results = mongoTemplate.aggregate(aggregation, "events", Event.class);
-
-        return results
-                .getMappedResults()
-                .stream()
-                .map(converterService::convertToEventExpandedResponse)
-                .collect(Collectors.toList());
+        return results.map(document -> mongoTemplate.getConverter().read(Event.class, document));
     }
 
     //? Cron expression: sec min hrs day mon weekday
-    @Scheduled(cron = "* * 1 * * * ")
+    //? deadlines are applied by the EventDeadlineService, this sweep catches anything it missed
+    //? and queues deadlines of events created on other instances before they are due
+    @Scheduled(cron = "${eventSweepCron:0 */10 * * * *}")
+    @LeaderOnly
     @Override
     public void updateEventsJob() {
         LocalDateTime now = LocalDateTime.now();
-        List<Criteria> criteriaList = new ArrayList<>();
-
-        criteriaList.add(Criteria.where("status").is(EventStatus.PENDING));
-        criteriaList.add(Criteria.where("pendingUntil").lt(now));
-
-        Criteria combinedCriteria = new Criteria().andOperator(criteriaList.toArray(new Criteria[0]));
-
 
+        Query overdue = new Query(Criteria.where("status").is(EventStatus.PENDING).and("pendingUntil").lt(now));
         Update update = new Update().set("status", EventStatus.IN_PROGRESS);
+        long started = mongoTemplate.updateMulti(overdue, update, Event.class).getModifiedCount();
 
-        mongoTemplate.updateMulti(new Query(combinedCriteria), update, Event.class);
-
-
-         log.info("Successfully updated the status of events at time ---> {}", LocalDateTime.now(ZoneId.of("Europe/Zagreb")));
+        int scheduled = eventDeadlineService.scheduleUpcoming(now.plusMinutes(EVENT_SWEEP_HORIZON_MINUTES));
+        if (started > 0) {
+            activeEventRegistry.refresh();
+        }
 
+        log.info("Event sweep started {} overdue events and queued {} upcoming deadlines at time ---> {}",
+                started, scheduled, LocalDateTime.now(ZoneId.of("Europe/Zagreb")));
     }
 
     @Override
     public String updateEventStatus(String id, EventStatus status) {
-        Optional<Event> event = eventRepository.getById(id);
-        if (event.isEmpty()) {
-            throw new NotFoundException("The event with the given id was not found");
-        }
-        event.get().setStatus(status);
-        eventRepository.save(event.get());
+        //? closing an event also closes its orders
+        Event event = eventCascadeService.cascades(status)
+                ? eventCascadeService.closeEvent(id, status)
+                : statusTransitionService.transitionEvent(id, status);
+        activeEventRegistry.put(event);
         log.info("Event status updated successfully");
 
         return "Event status updated successfully";
@@ -167,7 +218,7 @@ public class EventServiceImpl implements EventService {
 
     @Override
     public EventDto getActiveEvent() {
-        UserProfile userProfile = userProfileRepository.getUserProfileByUserId(Helper.getLoggedInUserId());
+        UserProfile userProfile = userProfileResolver.getLoggedInUserProfile();
         List<EventStatus> statuses = new ArrayList<>();
         statuses.add(EventStatus.PENDING);
         statuses.add(EventStatus.IN_PROGRESS);
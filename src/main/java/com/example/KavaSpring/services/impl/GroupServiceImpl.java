@@ -76,6 +76,12 @@ public class GroupServiceImpl implements GroupService {
             throw new IllegalArgumentException("Invalid password");
         }
 
+        if (passwordEncoder.upgradeEncoding(group.getPassword())) {
+            group.setPassword(passwordEncoder.encode(request.getPassword()));
+            groupRepository.save(group);
+            log.info("Group password hash upgraded");
+        }
+
         GroupResponse response = new GroupResponse();
         response.setGroupId(group.getId());
         response.setName(request.getName());
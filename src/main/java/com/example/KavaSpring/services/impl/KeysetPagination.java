@@ -0,0 +1,177 @@
+package com.example.KavaSpring.services.impl;
+
+import com.example.KavaSpring.models.dto.KeysetPageRequest;
+import com.example.KavaSpring.models.dto.PageResponse;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.FacetOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Keyset pagination over (sortField, _id) with an opaque continuation token.
+ * The token holds the sort value and the _id of the last returned document, the next page continues strictly after it.
+ */
+final class KeysetPagination {
+
+    static final int DEFAULT_PAGE_SIZE = 20;
+
+    static final int MAX_PAGE_SIZE = 100;
+
+    private static final String ID = "_id";
+
+    private KeysetPagination() {
+    }
+
+    /**
+     * Runs the filter stages, pages the result on (sortField, _id) and applies the page stages to the page only.
+     * The page stages have to keep _id and sortField, the cursor of the next page is read from them.
+     */
+    static PageResponse<Document> aggregatePage(MongoTemplate mongoTemplate,
+                                                String collection,
+                                                List<AggregationOperation> filterStages,
+                                                List<AggregationOperation> pageStages,
+                                                String sortField,
+                                                Sort.Direction direction,
+                                                KeysetPageRequest page) {
+        int limit = pageSize(page);
+
+        List<AggregationOperation> itemStages = new ArrayList<>();
+        if (page != null && page.getCursor() != null && !page.getCursor().isEmpty()) {
+            itemStages.add(Aggregation.match(after(sortField, direction, decode(page.getCursor()))));
+        }
+        itemStages.add(Aggregation.sort(ID.equals(sortField) ? Sort.by(direction, ID) : Sort.by(direction, sortField).and(Sort.by(direction, ID))));
+        //? one extra document tells whether there is a next page
+        itemStages.add(Aggregation.limit(limit + 1L));
+        itemStages.addAll(pageStages);
+
+        List<AggregationOperation> stages = new ArrayList<>(filterStages);
+        List<Document> items;
+        Long totalCount = null;
+
+        if (page != null && page.isIncludeTotal()) {
+            FacetOperation facet = Aggregation.facet(itemStages.toArray(new AggregationOperation[0])).as("items")
+                    .and(Aggregation.count().as("total")).as("total");
+            stages.add(facet);
+
+            Document result = mongoTemplate.aggregate(Aggregation.newAggregation(stages), collection, Document.class).getUniqueMappedResult();
+            items = result != null ? result.getList("items", Document.class) : List.of();
+            List<Document> total = result != null ? result.getList("total", Document.class) : List.of();
+            totalCount = total.isEmpty() ? 0L : total.get(0).get("total", Number.class).longValue();
+        } else {
+            stages.addAll(itemStages);
+            items = mongoTemplate.aggregate(Aggregation.newAggregation(stages), collection, Document.class).getMappedResults();
+        }
+
+        String nextCursor = null;
+        if (items.size() > limit) {
+            items = new ArrayList<>(items.subList(0, limit));
+            Document last = items.get(limit - 1);
+            nextCursor = encode(last.get(sortField), last.get("_id"));
+        }
+        return new PageResponse<>(items, nextCursor, totalCount);
+    }
+
+    /**
+     * Merges documents held in memory into a page read with aggregatePage, both ordered by (sortValue, id) descending.
+     * The database page may be null when everything comes from memory, the cursor format stays the same either way.
+     */
+    static <T> PageResponse<T> mergePage(List<T> memoryItems,
+                                         PageResponse<T> databasePage,
+                                         Function<T, Date> sortValue,
+                                         Function<T, ObjectId> id,
+                                         KeysetPageRequest page) {
+        int limit = pageSize(page);
+        Comparator<T> order = Comparator.comparing(sortValue).thenComparing(id).reversed();
+
+        List<T> items = new ArrayList<>();
+        if (page != null && page.getCursor() != null && !page.getCursor().isEmpty()) {
+            Document cursor = decode(page.getCursor());
+            if (!(cursor.get("v") instanceof Date cursorValue)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            ObjectId cursorId = cursor.getObjectId("id");
+            memoryItems.stream()
+                    .filter(item -> sortValue.apply(item).compareTo(cursorValue) < 0
+                            || (sortValue.apply(item).equals(cursorValue) && id.apply(item).compareTo(cursorId) < 0))
+                    .forEach(items::add);
+        } else {
+            items.addAll(memoryItems);
+        }
+        if (databasePage != null) {
+            items.addAll(databasePage.getItems());
+        }
+        items.sort(order);
+
+        //? the database page holds the first limit documents after the cursor, so the merged prefix is complete
+        boolean hasMore = items.size() > limit || (databasePage != null && databasePage.getNextCursor() != null);
+        if (items.size() > limit) {
+            items = new ArrayList<>(items.subList(0, limit));
+        }
+        String nextCursor = null;
+        if (hasMore && !items.isEmpty()) {
+            T last = items.get(items.size() - 1);
+            nextCursor = encode(sortValue.apply(last), id.apply(last));
+        }
+
+        Long totalCount = null;
+        if (page != null && page.isIncludeTotal()) {
+            long databaseTotal = databasePage != null && databasePage.getTotalCount() != null ? databasePage.getTotalCount() : 0L;
+            totalCount = memoryItems.size() + databaseTotal;
+        }
+        return new PageResponse<>(items, nextCursor, totalCount);
+    }
+
+    static int pageSize(KeysetPageRequest page) {
+        if (page == null || page.getLimit() == null || page.getLimit() <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(page.getLimit(), MAX_PAGE_SIZE);
+    }
+
+    static Criteria after(String sortField, Sort.Direction direction, Document cursor) {
+        Object value = cursor.get("v");
+        Object id = cursor.get("id");
+
+        //? paging on _id alone, the sort value is the id itself
+        if (ID.equals(sortField)) {
+            return direction == Sort.Direction.DESC ? Criteria.where(ID).lt(id) : Criteria.where(ID).gt(id);
+        }
+
+        if (direction == Sort.Direction.DESC) {
+            return new Criteria().orOperator(
+                    Criteria.where(sortField).lt(value),
+                    Criteria.where(sortField).is(value).and("_id").lt(id)
+            );
+        }
+        return new Criteria().orOperator(
+                Criteria.where(sortField).gt(value),
+                Criteria.where(sortField).is(value).and("_id").gt(id)
+        );
+    }
+
+    //? extended JSON keeps the BSON types (dates, ObjectIds, numbers) of the cursor values
+    static String encode(Object value, Object id) {
+        String json = new Document("v", value).append("id", id).toJson();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Document decode(String cursor) {
+        try {
+            Document document = Document.parse(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+            if (!document.containsKey("v") || !(document.get("id") instanceof ObjectId)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return document;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
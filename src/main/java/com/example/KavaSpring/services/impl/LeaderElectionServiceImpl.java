@@ -0,0 +1,168 @@
+package com.example.KavaSpring.services.impl;
+
+import com.example.KavaSpring.models.dao.LeaderLease;
+import com.example.KavaSpring.services.LeaderElectionService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.SetOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leader election over a single lease document in leaderLeases.
+ * The holder renews the lease well before it expires, any other instance takes it over once it has expired.
+ * Renewal runs on its own thread so a long scheduled job can never delay it past the lease.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class LeaderElectionServiceImpl implements LeaderElectionService {
+
+    private static final String LEASE_ID = "scheduler";
+
+    private final MongoTemplate mongoTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${leaderLeaseMs:15000}")
+    private long leaseMs;
+
+    //? leadership ends locally this long before the stored expiry, it covers clock skew between instances
+    @Value("${leaderLeaseSafetyMs:3000}")
+    private long safetyMs;
+
+    @Value("${leaderLeaseRenewMs:5000}")
+    private long renewMs;
+
+    private String holderId;
+
+    private volatile boolean leader;
+
+    private volatile long leaderUntilNanos;
+
+    private volatile long fencingToken;
+
+    private ScheduledExecutorService renewer;
+
+    @PostConstruct
+    void init() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        holderId = host + "-" + UUID.randomUUID();
+        Gauge.builder("leader.elected", this, service -> service.isLeader() ? 1 : 0).register(meterRegistry);
+
+        renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "leader-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        //? an exception escaping the task would cancel every later renewal
+        renewer.scheduleWithFixedDelay(() -> {
+            try {
+                renewLease();
+            } catch (RuntimeException e) {
+                log.error("Leader lease renewal failed: {}", e.getMessage());
+            }
+        }, 0, renewMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean isLeader() {
+        return leader && System.nanoTime() - leaderUntilNanos < 0;
+    }
+
+    @Override
+    public long getFencingToken() {
+        return fencingToken;
+    }
+
+    @Override
+    public long getCurrentFencingToken() {
+        LeaderLease lease = mongoTemplate.findById(LEASE_ID, LeaderLease.class);
+        return lease == null ? 0L : lease.getFencingToken();
+    }
+
+    @Override
+    public void renewLease() {
+        long startedAt = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+
+        //? matches when this instance holds the lease or when it expired, a live lease of another instance makes the upsert collide on _id
+        Query query = new Query(Criteria.where("_id").is(LEASE_ID)
+                .orOperator(Criteria.where("holderId").is(holderId), Criteria.where("expiresAt").lt(now)));
+
+        //? the token only grows when the lease changes hands, $holderId still holds the previous holder here
+        AggregationUpdate update = AggregationUpdate.update()
+                .set(SetOperation.builder()
+                        .set("fencingToken").toValue(ConditionalOperators.when(ComparisonOperators.valueOf("holderId").equalToValue(holderId))
+                                .thenValueOf("fencingToken")
+                                .otherwiseValueOf(ArithmeticOperators.Add.valueOf(ConditionalOperators.ifNull("fencingToken").then(0L)).add(1)))
+                        .and()
+                        .set("holderId").toValue(holderId)
+                        .and()
+                        .set("expiresAt").toValue(now.plusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMs))));
+
+        LeaderLease lease;
+        try {
+            lease = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().upsert(true).returnNew(true), LeaderLease.class);
+        } catch (DuplicateKeyException e) {
+            lease = null;
+        } catch (RuntimeException e) {
+            log.error("Leader lease renewal failed: {}", e.getMessage());
+            return;
+        }
+
+        boolean wasLeader = isLeader();
+        if (lease == null || !holderId.equals(lease.getHolderId())) {
+            leader = false;
+            if (wasLeader) {
+                log.warn("Leader lease lost");
+            }
+            return;
+        }
+
+        fencingToken = lease.getFencingToken();
+        leaderUntilNanos = startedAt + TimeUnit.MILLISECONDS.toNanos(leaseMs - safetyMs);
+        leader = true;
+        if (!wasLeader) {
+            log.info("Leader lease acquired with fencing token {}", fencingToken);
+        }
+    }
+
+    //? releasing on shutdown lets another instance take over on its next renewal instead of waiting for the expiry
+    @PreDestroy
+    void release() {
+        renewer.shutdownNow();
+        if (!isLeader()) {
+            return;
+        }
+        leader = false;
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(LEASE_ID).and("holderId").is(holderId)),
+                new Update().set("expiresAt", LocalDateTime.now()), LeaderLease.class);
+    }
+}
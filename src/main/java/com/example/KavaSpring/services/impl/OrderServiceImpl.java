@@ -1,31 +1,48 @@
 package com.example.KavaSpring.services.impl;
 
 import com.example.KavaSpring.converters.ConverterService;
+import com.example.KavaSpring.exceptions.IllegalStatusTransitionException;
 import com.example.KavaSpring.exceptions.NotValidEnumException;
 import com.example.KavaSpring.exceptions.OrderAlreadyRatedException;
 import com.example.KavaSpring.exceptions.NotFoundException;
+import com.example.KavaSpring.models.dao.Event;
 import com.example.KavaSpring.models.dao.Order;
 import com.example.KavaSpring.models.dao.UserProfile;
 import com.example.KavaSpring.models.dto.*;
 import com.example.KavaSpring.models.enums.EventStatus;
+import com.example.KavaSpring.models.enums.EventType;
+import com.example.KavaSpring.models.enums.ExportFormat;
 import com.example.KavaSpring.models.enums.OrderStatus;
 import com.example.KavaSpring.repository.EventRepository;
 import com.example.KavaSpring.repository.OrderRepository;
 import com.example.KavaSpring.repository.UserProfileRepository;
-import com.example.KavaSpring.security.utils.Helper;
+import com.example.KavaSpring.security.utils.UserProfileResolver;
 import com.example.KavaSpring.services.OrderService;
+import com.example.KavaSpring.services.StatusTransitionService;
 import com.example.KavaSpring.services.WebSocketService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.result.UpdateResult;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.*;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
@@ -45,23 +62,31 @@ public class OrderServiceImpl implements OrderService {
 
     private final WebSocketService webSocketService;
 
+    private final ObjectMapper objectMapper;
+
+    private final StatusTransitionService statusTransitionService;
+
+    private final UserProfileResolver userProfileResolver;
+
+    private static final int EXPORT_BATCH_SIZE = 500;
+
+    private static final Pattern ADDITIONAL_OPTION_KEY = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
     @Override
     public OrderResponse createOrder(OrderRequest request) {
-        UserProfile userProfile = userProfileRepository.getUserProfileByUserId(Helper.getLoggedInUserId());
-        boolean existsEvent = eventRepository.existsById(request.getEventId());
-
+        UserProfile userProfile = userProfileResolver.getLoggedInUserProfile();
 
         if (userProfile == null) {
             throw new NotFoundException("No userProfile associated with id");
         }
 
-        if (!existsEvent) {
-            throw new NotFoundException("No event associated with eventId in the order");
-        }
+        //? existence check, creator lookup and event outcome in one projected read
+        Query eventQuery = new Query(Criteria.where("_id").is(request.getEventId()));
+        eventQuery.fields().include("userProfileId").include("status");
+        Event event = mongoTemplate.findOne(eventQuery, Event.class);
 
-        boolean existingOrder = orderRepository.existsByUserProfileIdAndEventId(userProfile.getId(), request.getEventId());
-        if (existingOrder) {
-            throw new IllegalStateException("User already has an order for this event");
+        if (event == null) {
+            throw new NotFoundException("No event associated with eventId in the order");
         }
 
         log.info("The order request is: {}", request);
@@ -69,10 +94,22 @@ public class OrderServiceImpl implements OrderService {
         order.setUserProfileId(userProfile.getId());
         order.setEventId(request.getEventId());
         order.setAdditionalOptions(request.getAdditionalOptions());
-        orderRepository.save(order);
+        //? an event closing between this read and the insert leaves the outcome empty, like the order status its cascade misses
+        if (event.getStatus() == EventStatus.COMPLETED || event.getStatus() == EventStatus.CANCELLED) {
+            order.setEventOutcome(event.getStatus());
+        }
+
+        //? duplicates are rejected by the unique (userProfileId, eventId) index
+        try {
+            orderRepository.insert(order);
+        } catch (DuplicateKeyException e) {
+            throw new IllegalStateException("User already has an order for this event");
+        }
+
+        incrementOrderCount(userProfile);
 
         //? notify the event creator userProfile through websocket
-        webSocketService.notifyEventUserProfile(order);
+        webSocketService.notifyEventUserProfile(order, event);
 
         log.info("Order created");
         return converterService.convertToOrderResponse(request);
@@ -88,21 +125,80 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
-    public List<OrderEventInfoDto> getAllOrdersFromUserProfile() {
-        UserProfile userProfile = userProfileRepository.getUserProfileByUserId(Helper.getLoggedInUserId());
+    public PageResponse<OrderEventInfoDto> getAllOrdersFromUserProfile(KeysetPageRequest page) {
+        UserProfile userProfile = userProfileResolver.getLoggedInUserProfile();
 
         if (userProfile == null) {
             throw new NotFoundException("Bad user profile id provided");
         }
 
-        MatchOperation matchOperation = Aggregation.match(Criteria.where("userProfileId").is(userProfile.getId()));
+        MatchOperation matchOperation = Aggregation.match(Criteria.where("userProfileId").is(new ObjectId(userProfile.getId())));
+
+        //? the join only runs for the orders of the requested page
+        PageResponse<Document> results = KeysetPagination.aggregatePage(
+                mongoTemplate,
+                "orders",
+                List.of(matchOperation),
+                orderEventInfoStages(),
+                "createdAt",
+                Sort.Direction.DESC,
+                page
+        );
 
-        AddFieldsOperation convertEventIdToObjectId  = Aggregation.addFields()
-                .addField("eventId")
-                .withValueOf(ConvertOperators.ToObjectId.toObjectId("$eventId"))
-                .build();
+        return results
+                .map(document -> mongoTemplate.getConverter().read(OrderEventInfoDto.class, document))
+                .map(converterService::convertToOrderEventInfoDto);
+    }
 
-        LookupOperation lookupOperation = Aggregation.lookup("events", "eventId", "_id", "eventDetails");
+    @Override
+    public StreamingResponseBody exportOrders(ExportFormat format) {
+        //? the body is written on an async thread without the security context, the profile is resolved here
+        UserProfile userProfile = userProfileResolver.getLoggedInUserProfile();
+
+        if (userProfile == null) {
+            throw new NotFoundException("Bad user profile id provided");
+        }
+
+        List<AggregationOperation> stages = new ArrayList<>();
+        stages.add(Aggregation.match(Criteria.where("userProfileId").is(new ObjectId(userProfile.getId()))));
+        stages.add(Aggregation.sort(Sort.by(Sort.Direction.DESC, "createdAt")));
+        stages.addAll(orderEventInfoStages());
+
+        Aggregation aggregation = Aggregation.newAggregation(stages)
+                .withOptions(AggregationOptions.builder().cursorBatchSize(EXPORT_BATCH_SIZE).build());
+
+        return outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+            if (format == ExportFormat.CSV) {
+                writer.write("orderId,eventId,eventType,status,rating,createdAt,additionalOptions\n");
+            }
+
+            //? the cursor is read batch by batch, only one batch is held in memory at a time
+            try (Stream<Document> documents = mongoTemplate.aggregateStream(aggregation, "orders", Document.class)) {
+                Iterator<Document> iterator = documents.iterator();
+                while (iterator.hasNext()) {
+                    OrderEventInfoDto order = mongoTemplate.getConverter().read(OrderEventInfoDto.class, iterator.next());
+                    if (format == ExportFormat.CSV) {
+                        writeCsvRow(writer, order);
+                    } else {
+                        writer.write(objectMapper.writeValueAsString(order));
+                        writer.write('\n');
+                    }
+                }
+            }
+            writer.flush();
+            log.info("Order export finished");
+        };
+    }
+
+    private List<AggregationOperation> orderEventInfoStages() {
+        LookupOperation lookupOperation = LookupOperation.newLookup()
+                .from("events")
+                .localField("eventId")
+                .foreignField("_id")
+                .pipeline(Aggregation.project("eventType"))
+                .as("eventDetails");
 
         UnwindOperation unwindOperation = Aggregation.unwind("eventDetails");
 
@@ -115,29 +211,36 @@ public class OrderServiceImpl implements OrderService {
                 .and("rating").as("rating")
                 .and("createdAt").as("createdAt");
 
-        SortOperation sortOperation = Aggregation.sort(Sort.by(Sort.Direction.DESC, "createdAt"));
-
-        Aggregation aggregation = Aggregation.newAggregation(
-                matchOperation,
-                convertEventIdToObjectId,
-                lookupOperation,
-                unwindOperation,
-                projectionOperation,
-                sortOperation
-        );
+        return List.of(lookupOperation, unwindOperation, projectionOperation);
+    }
 
-        AggregationResults<OrderEventInfoDto> results = mongoTemplate.aggregate(aggregation, "orders", OrderEventInfoDto.class);
+    private void writeCsvRow(Writer writer, OrderEventInfoDto order) throws IOException {
+        String additionalOptions = order.getAdditionalOptions() != null ? objectMapper.writeValueAsString(order.getAdditionalOptions()) : "";
+        writer.write(String.join(",",
+                csvValue(order.getOrderId()),
+                csvValue(order.getEventId()),
+                csvValue(order.getEventType()),
+                csvValue(order.getStatus()),
+                csvValue(order.getRating()),
+                csvValue(order.getCreatedAt()),
+                csvValue(additionalOptions)));
+        writer.write('\n');
+    }
 
-        return results
-                .getMappedResults()
-                .stream()
-                .map(converterService::convertToOrderEventInfoDto)
-                .collect(Collectors.toList());
+    private static String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
     }
 
     @Override
-    public List<OrderActivityResponse> getOrdersByActivityStatus(boolean isActive) {
-        UserProfile userProfile = userProfileRepository.getUserProfileByUserId(Helper.getLoggedInUserId());
+    public PageResponse<OrderActivityResponse> getOrdersByActivityStatus(boolean isActive, KeysetPageRequest page) {
+        UserProfile userProfile = userProfileResolver.getLoggedInUserProfile();
 
         if (userProfile == null) {
             throw new NotFoundException("User profile is null");
@@ -147,25 +250,24 @@ public class OrderServiceImpl implements OrderService {
             throw new IllegalStateException("User profile id is null");
         }
 
-        MatchOperation matchUserOrders  = Aggregation.match(Criteria.where("userProfileId").is(userProfile.getId()));
-
+        //! Active orders belong to open events, inactive ones to completed events, cancelled events are left out
+        //? the event status is mirrored on the order as eventOutcome, so the page is cut on the orders index before any lookup
+        Criteria matchOutcome = isActive
+                ? Criteria.where("eventOutcome").is(null)
+                : Criteria.where("eventOutcome").is(EventStatus.COMPLETED);
 
-        AddFieldsOperation convertEventIdToObjectId  = Aggregation.addFields()
-                .addField("eventId")
-                .withValueOf(ConvertOperators.ToObjectId.toObjectId("$eventId"))
-                .build();
+        MatchOperation matchUserOrders = Aggregation.match(Criteria.where("userProfileId").is(new ObjectId(userProfile.getId()))
+                .andOperator(matchOutcome));
 
-        LookupOperation lookupOperation = Aggregation.lookup("events", "eventId", "_id", "event");
+        LookupOperation lookupOperation = LookupOperation.newLookup()
+                .from("events")
+                .localField("eventId")
+                .foreignField("_id")
+                .pipeline(Aggregation.project("title", "description", "groupId", "status", "eventType", "createdAt", "pendingUntil"))
+                .as("event");
 
         UnwindOperation unwindOperation = Aggregation.unwind("event");
 
-        //! Determine which statuses to include based on isActive parameter
-        List<EventStatus> statusesToInclude = isActive
-                ? Arrays.asList(EventStatus.PENDING, EventStatus.IN_PROGRESS)
-                : Collections.singletonList(EventStatus.COMPLETED);
-
-        MatchOperation matchEventStatus  = Aggregation.match(Criteria.where("event.status").in(statusesToInclude));
-
         ProjectionOperation projectionOperation = Aggregation.project()
                 .and("event._id").as("eventId")
                 .and("_id").as("orderId")
@@ -177,36 +279,25 @@ public class OrderServiceImpl implements OrderService {
                 .and("event.createdAt").as("createdAt")
                 .and("event.pendingUntil").as("pendingUntil");
 
-        SortOperation sortOperation = Aggregation.sort(Sort.by(Sort.Direction.DESC, "event.createdAt"));
-
-        Aggregation aggregation = Aggregation.newAggregation(
-                matchUserOrders,
-                convertEventIdToObjectId,
-                lookupOperation,
-                unwindOperation,
-                matchEventStatus,
-                projectionOperation,
-                sortOperation
+        //? pages on the order _id, most recently placed orders first
+        PageResponse<Document> results = KeysetPagination.aggregatePage(
+                mongoTemplate,
+                "orders",
+                List.of(matchUserOrders),
+                List.of(lookupOperation, unwindOperation, projectionOperation),
+                "_id",
+                Sort.Direction.DESC,
+                page
         );
 
-        AggregationResults<OrderActivityResponse> results = mongoTemplate.aggregate(aggregation, "orders", OrderActivityResponse.class);
-
         return results
-                .getMappedResults()
-                .stream()
-                .map(converterService::convertToOrderActiveResponse)
-                .collect(Collectors.toList());
-
+                .map(document -> mongoTemplate.getConverter().read(OrderActivityResponse.class, document))
+                .map(converterService::convertToOrderActiveResponse);
     }
 
     @Override
     public String updateOrderStatus(String id, OrderStatus status) {
-        Optional<Order> order = orderRepository.getById(id);
-        if (order.isEmpty()) {
-            throw new NotFoundException("The order status update was not successful");
-        }
-        order.get().setStatus(status);
-        orderRepository.save(order.get());
+        statusTransitionService.transitionOrder(id, status);
 
         log.info("Order status successfully updated");
         return "Order status successfully updated";
@@ -214,19 +305,45 @@ public class OrderServiceImpl implements OrderService {
 
     @Override
     public String updateAllOrdersStatus(String id, OrderStatus status) {
-        List<Order> orders = orderRepository.findAllByEventIdAndStatus(id, OrderStatus.IN_PROGRESS);
+        if (status == null || !EnumSet.allOf(OrderStatus.class).contains(status)) {
+            throw new NotValidEnumException("Bad enum value provided");
+        }
+
+        Set<OrderStatus> sources = allowedOrderSources(status);
+        Query query = new Query(Criteria.where("eventId").is(id).and("status").in(sources));
+        UpdateResult result = mongoTemplate.updateMulti(query, new Update().set("status", status), Order.class);
 
-        if (!EnumSet.allOf(OrderStatus.class).contains(status)) {
+        log.info("Updated {} orders for event: {} to status: {}", result.getModifiedCount(), id, status);
+        return String.format("Successfully updated %d orders", result.getModifiedCount());
+    }
+
+    @Override
+    public OrderBulkStatusResponse bulkUpdateOrdersStatus(OrderBulkStatusRequest request) {
+        if (request.getStatus() == null) {
             throw new NotValidEnumException("Bad enum value provided");
         }
 
-        orders.forEach(order -> {
-                            order.setStatus(status);
-                            orderRepository.save(order);
-                        });
+        boolean hasOrderIds = request.getOrderIds() != null && !request.getOrderIds().isEmpty();
+        boolean hasEventIds = request.getEventIds() != null && !request.getEventIds().isEmpty();
+        if (!hasOrderIds && !hasEventIds) {
+            throw new IllegalArgumentException("No orderIds or eventIds provided");
+        }
+
+        //? one update for the whole request, orders selected by id or by event, same semantics as updateAllOrdersStatus
+        List<Criteria> selectors = new ArrayList<>();
+        if (hasOrderIds) {
+            selectors.add(Criteria.where("_id").in(request.getOrderIds()));
+        }
+        if (hasEventIds) {
+            selectors.add(Criteria.where("eventId").in(request.getEventIds()));
+        }
+
+        Set<OrderStatus> sources = allowedOrderSources(request.getStatus());
+        Query query = new Query(new Criteria().orOperator(selectors).and("status").in(sources));
+        UpdateResult result = mongoTemplate.updateMulti(query, new Update().set("status", request.getStatus()), Order.class);
 
-        log.info("Updated {} orders for event: {} to status: {}", orders.size(), id, status);
-        return String.format("Successfully updated %d orders", orders.size());
+        log.info("Bulk order status update to {} matched {} and modified {} orders", request.getStatus(), result.getMatchedCount(), result.getModifiedCount());
+        return new OrderBulkStatusResponse(result.getMatchedCount(), result.getModifiedCount());
     }
 
     @Override
@@ -234,17 +351,17 @@ public class OrderServiceImpl implements OrderService {
 
         eventRepository.findById(id).orElseThrow(() -> new NotFoundException("No event associated with the given eventId"));
 
-        MatchOperation matchOrdersByEventId = Aggregation.match(Criteria.where("eventId").is(id));
+        MatchOperation matchOrdersByEventId = Aggregation.match(Criteria.where("eventId").is(new ObjectId(id)));
 
         //? By active orders we mean the orders that have the status IN_PROGRESS
         MatchOperation matchOrdersByOrderStatus = Aggregation.match(Criteria.where("status").is(OrderStatus.IN_PROGRESS));
 
-        AddFieldsOperation convertUserProfileIdToObjectId  = Aggregation.addFields()
-                .addField("userProfileId")
-                .withValueOf(ConvertOperators.ToObjectId.toObjectId("$userProfileId"))
-                .build();
-
-        LookupOperation lookupOperation = Aggregation.lookup("userProfiles", "userProfileId", "_id", "userProfile");
+        LookupOperation lookupOperation = LookupOperation.newLookup()
+                .from("userProfiles")
+                .localField("userProfileId")
+                .foreignField("_id")
+                .pipeline(Aggregation.project("firstName", "lastName"))
+                .as("userProfile");
 
         UnwindOperation unwindOperation = Aggregation.unwind("userProfile");
 
@@ -263,7 +380,6 @@ public class OrderServiceImpl implements OrderService {
         Aggregation aggregation = Aggregation.newAggregation(
               matchOrdersByEventId,
               matchOrdersByOrderStatus,
-              convertUserProfileIdToObjectId,
               lookupOperation,
               unwindOperation,
               projectionOperation,
@@ -278,56 +394,157 @@ public class OrderServiceImpl implements OrderService {
 
     @Override
     public String rateOrder(String id, int rating) {
-        Optional<Order> order = orderRepository.getById(id);
-
-        if (order.isEmpty()) {
-            throw new IllegalStateException("Bad order object value state");
+        if (rating <= 0) {
+            throw new IllegalStateException("The rating has to be a positive number");
         }
 
-        if (order.get().getRating() > 0) {
-            throw new OrderAlreadyRatedException("The order is already rated");
+        //? the rating == 0 condition makes the write itself decide which of concurrent ratings wins
+        Query query = new Query(Criteria.where("_id").is(id).and("rating").is(0));
+        query.fields().include("eventId");
+        Order order = mongoTemplate.findAndModify(query, new Update().set("rating", rating).currentDate("ratedAt"), Order.class);
+
+        if (order == null) {
+            if (orderRepository.existsById(id)) {
+                throw new OrderAlreadyRatedException("The order is already rated");
+            }
+            throw new IllegalStateException("Bad order object value state");
         }
 
-        order.get().setRating(rating);
-        orderRepository.save(order.get());
+        applyRatingToEventCreator(order.getEventId(), rating);
         log.info("Order successfully rated");
 
         return "Order successfully rated";
     }
 
     @Override
-    public List<OrderSearchResponse> searchOrders(OrderSearchRequest request) {
-        UserProfile userProfile = userProfileRepository.getUserProfileByUserId(Helper.getLoggedInUserId());
+    public PageResponse<OrderSearchResponse> searchOrders(OrderSearchRequest request) {
+        UserProfile userProfile = userProfileResolver.getLoggedInUserProfile();
         if (userProfile == null) {
             throw new NotFoundException("No user profile defined");
         }
-        String userProfileId = userProfile.getId();
-        String searchTerm = request.getSearchTerm();
+        KeysetPageRequest page = new KeysetPageRequest(request.getCursor(), request.getLimit(), request.isIncludeTotal());
 
         List<Criteria> criteriaList = new ArrayList<>();
-        criteriaList.add(Criteria.where("userProfileId").is(userProfileId));
+        criteriaList.add(Criteria.where("userProfileId").is(new ObjectId(userProfile.getId())));
 
-        if (searchTerm != null && !searchTerm.isEmpty()) {
-            criteriaList.add(Criteria.where("status").regex(searchTerm, "i"));
+        //? (userProfileId, status, createdAt) index, a status $in is merged in createdAt order
+        if (request.getStatuses() != null && !request.getStatuses().isEmpty()) {
+            criteriaList.add(Criteria.where("status").in(request.getStatuses()));
         }
 
-        Criteria combinedCriteria = new Criteria().andOperator(criteriaList.toArray(new Criteria[0]));
+        if (request.getCreatedFrom() != null || request.getCreatedTo() != null) {
+            Criteria createdAt = Criteria.where("createdAt");
+            if (request.getCreatedFrom() != null) {
+                createdAt.gte(request.getCreatedFrom());
+            }
+            if (request.getCreatedTo() != null) {
+                createdAt.lt(request.getCreatedTo());
+            }
+            criteriaList.add(createdAt);
+        }
 
-        SortOperation sortOperation = Aggregation.sort(Sort.by(Sort.Direction.DESC, "createdAt"));
+        if (request.getAdditionalOptions() != null) {
+            request.getAdditionalOptions().forEach((key, value) -> criteriaList.add(additionalOptionCriteria(key, value)));
+        }
 
+        boolean hasSearchTerm = request.getSearchTerm() != null && !request.getSearchTerm().isBlank();
+        boolean hasEventType = request.getEventType() != null && request.getEventType() != EventType.MIX;
+
+        //? event side filters are resolved to event ids first, the orders are then matched on eventId
+        if (hasSearchTerm || hasEventType) {
+            Query eventQuery = new Query(Criteria.where("groupId").is(new ObjectId(userProfile.getGroupId())));
+            if (hasSearchTerm) {
+                eventQuery.addCriteria(TextCriteria.forDefaultLanguage().matching(request.getSearchTerm()));
+            }
+            if (hasEventType) {
+                eventQuery.addCriteria(Criteria.where("eventType").is(request.getEventType()));
+            }
+            eventQuery.fields().include("_id");
+
+            List<ObjectId> eventIds = mongoTemplate.find(eventQuery, Document.class, "events")
+                    .stream()
+                    .map(document -> document.getObjectId("_id"))
+                    .toList();
+
+            if (eventIds.isEmpty()) {
+                return new PageResponse<>(List.of(), null, page.isIncludeTotal() ? 0L : null);
+            }
+            criteriaList.add(Criteria.where("eventId").in(eventIds));
+        }
 
-        Aggregation aggregation = Aggregation.newAggregation(
-                Aggregation.match(combinedCriteria),
-                sortOperation
+        Criteria combinedCriteria = new Criteria().andOperator(criteriaList.toArray(new Criteria[0]));
+
+        PageResponse<Document> results = KeysetPagination.aggregatePage(
+                mongoTemplate,
+                "orders",
+                List.of(Aggregation.match(combinedCriteria)),
+                List.of(),
+                "createdAt",
+                Sort.Direction.DESC,
+                page
         );
 
-        AggregationResults<Order> results = mongoTemplate.aggregate(aggregation, "orders", Order.class);
+        return results
+                .map(document -> mongoTemplate.getConverter().read(Order.class, document))
+                .map(converterService::convertOrderToOrderSearchResponse);
+    }
+
+    private Set<OrderStatus> allowedOrderSources(OrderStatus target) {
+        Set<OrderStatus> sources = statusTransitionService.orderSourcesOf(target);
+        if (sources.isEmpty()) {
+            throw new IllegalStatusTransitionException("Order can not be moved to " + target);
+        }
+        return sources;
+    }
+
+    //? single document pipeline update, the counters and the derived score change atomically together
+    private void applyRatingToEventCreator(String eventId, int rating) {
+        Query eventQuery = new Query(Criteria.where("_id").is(eventId));
+        eventQuery.fields().include("userProfileId");
+        Event event = mongoTemplate.findOne(eventQuery, Event.class);
+
+        if (event == null) {
+            log.warn("Rated order references a missing event {}", eventId);
+            return;
+        }
+
+        AggregationUpdate update = AggregationUpdate.update()
+                .set(SetOperation.builder()
+                        .set("ratingSum").toValue(ArithmeticOperators.Add.valueOf("ratingSum").add(rating))
+                        .and()
+                        .set("ratingCount").toValue(ArithmeticOperators.Add.valueOf("ratingCount").add(1))
+                        .and()
+                        .set("ratingUpdatedAt").toValue(SystemVariable.NOW))
+                .set(SetOperation.set("score").toValue(ArithmeticOperators.Divide.valueOf("ratingSum").divideBy("ratingCount")));
+
+        //? counters that were not backfilled yet are left alone, the backfill or the next reconciliation counts this rating from the order
+        //? the cached profile of the creator carries the old score, it is evicted once the counters are written
+        Query profileQuery = new Query(Criteria.where("_id").is(event.getUserProfileId()).and("ratingCount").exists(true));
+        profileQuery.fields().include("userId");
+        UserProfile creator = mongoTemplate.findAndModify(profileQuery, update, UserProfile.class);
+        if (creator == null) {
+            log.warn("Score counters of user profile {} are not backfilled yet, the rating is left to the reconciliation", event.getUserProfileId());
+            return;
+        }
+        userProfileResolver.evict(creator.getUserId());
+    }
 
-        List<Order> matchingOrders = results.getMappedResults();
+    //? like the rating counters, a count that was not backfilled yet is left to the reconciliation
+    private void incrementOrderCount(UserProfile userProfile) {
+        Query profileQuery = new Query(Criteria.where("_id").is(userProfile.getId()).and("orderCount").exists(true));
+        mongoTemplate.updateFirst(profileQuery, new Update().inc("orderCount", 1).currentDate("orderCountUpdatedAt"), UserProfile.class);
+        userProfileResolver.evict(userProfile.getUserId());
+    }
 
-        return matchingOrders.stream()
-                .map(converterService::convertOrderToOrderSearchResponse)
-                .collect(Collectors.toList());
+    //? keys are used as field paths, only plain names and scalar values are accepted so no operator can be injected
+    private static Criteria additionalOptionCriteria(String key, Object value) {
+        if (key == null || !ADDITIONAL_OPTION_KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid additionalOptions key: " + key);
+        }
+        if (value != null && !(value instanceof String || value instanceof Number || value instanceof Boolean)) {
+            throw new IllegalArgumentException("Invalid additionalOptions value for key: " + key);
+        }
+        return Criteria.where("additionalOptions." + key).is(value);
     }
 
 
@@ -0,0 +1,129 @@
+package com.example.KavaSpring.services.impl;
+
+import com.example.KavaSpring.services.EventCascadeService;
+import com.example.KavaSpring.services.ReferenceMigrationService;
+import com.example.KavaSpring.services.ScoreReconciliationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Online migration of the String references (eventId, userProfileId, groupId) to native ObjectIds.
+ * Documents are rewritten in _id ordered batches, so the migration can run while the application serves traffic.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ReferenceMigrationServiceImpl implements ReferenceMigrationService {
+
+    //? BSON type number of a string
+    private static final int STRING_TYPE = 2;
+
+    private static final Map<String, List<String>> REFERENCES = Map.of(
+            "orders", List.of("eventId", "userProfileId"),
+            "events", List.of("userProfileId", "groupId"),
+            "userProfiles", List.of("groupId")
+    );
+
+    private final MongoTemplate mongoTemplate;
+
+    private final ScoreReconciliationService scoreReconciliationService;
+
+    private final EventCascadeService eventCascadeService;
+
+    @Value("${referenceMigrationEnabled:true}")
+    private boolean enabled;
+
+    @Value("${referenceMigrationBatchSize:500}")
+    private int batchSize;
+
+    //? runs on its own thread so startup is not blocked by a large collection
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        Thread thread = new Thread(this::migrateAndBackfill, "reference-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    //? the backfills match on ObjectId references, so they run after the references are migrated
+    private void migrateAndBackfill() {
+        if (enabled) {
+            migrateReferences();
+        }
+        try {
+            eventCascadeService.backfillEventOutcomes();
+        } catch (RuntimeException e) {
+            log.error("Event outcome backfill failed: {}", e.getMessage());
+        }
+        try {
+            scoreReconciliationService.backfillMissingCounters();
+        } catch (RuntimeException e) {
+            log.error("Score counter backfill failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void migrateReferences() {
+        REFERENCES.forEach((collection, fields) -> fields.forEach(field -> {
+            try {
+                long migrated = migrateField(collection, field);
+                log.info("Migrated {} {}.{} references to ObjectId", migrated, collection, field);
+            } catch (RuntimeException e) {
+                log.error("Migration of {}.{} failed: {}", collection, field, e.getMessage());
+            }
+        }));
+    }
+
+    @Override
+    public long migrateField(String collection, String field) {
+        long migrated = 0;
+        Object lastId = null;
+
+        while (true) {
+            Criteria criteria = Criteria.where(field).type(STRING_TYPE);
+            if (lastId != null) {
+                criteria = criteria.and("_id").gt(lastId);
+            }
+            Query query = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "_id")).limit(batchSize);
+            query.fields().include("_id").include(field);
+
+            List<Document> batch = mongoTemplate.find(query, Document.class, collection);
+            if (batch.isEmpty()) {
+                return migrated;
+            }
+
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+            int queued = 0;
+            for (Document document : batch) {
+                String value = document.getString(field);
+                if (!ObjectId.isValid(value)) {
+                    log.warn("Skipping {} {} with invalid {} value: {}", collection, document.get("_id"), field, value);
+                    continue;
+                }
+                //? the value is matched again so a concurrent write is never overwritten
+                Query match = new Query(Criteria.where("_id").is(document.get("_id")).and(field).is(value));
+                bulkOperations.updateOne(match, new Update().set(field, new ObjectId(value)));
+                queued++;
+            }
+
+            if (queued > 0) {
+                migrated += bulkOperations.execute().getModifiedCount();
+            }
+            lastId = batch.get(batch.size() - 1).get("_id");
+        }
+    }
+}
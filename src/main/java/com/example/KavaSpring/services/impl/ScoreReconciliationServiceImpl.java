@@ -0,0 +1,278 @@
+package com.example.KavaSpring.services.impl;
+
+import com.example.KavaSpring.config.leader.LeaderOnly;
+import com.example.KavaSpring.security.utils.UserProfileResolver;
+import com.example.KavaSpring.services.LeaderElectionService;
+import com.example.KavaSpring.services.ScoreReconciliationService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.*;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Recomputes the score and order counters of every user profile from the orders, one group per task.
+ * Ratings keep the counters current incrementally, this job only repairs drift.
+ * A rating writes the order first and the counters second, so ratings younger than the quiet period are not counted
+ * and profiles rated within it are skipped; a rating racing the job is then applied exactly once by its own increment.
+ * Every write is fenced with the leader lease token, a run of a former leader cannot overwrite what a newer run wrote.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ScoreReconciliationServiceImpl implements ScoreReconciliationService {
+
+    private final MongoTemplate mongoTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final UserProfileResolver userProfileResolver;
+
+    private final LeaderElectionService leaderElectionService;
+
+    @Value("${scoreReconciliationThreads:0}")
+    private int threads;
+
+    @Value("${scoreReconciliationBatchSize:500}")
+    private int batchSize;
+
+    @Value("${scoreReconciliationQuietMs:60000}")
+    private long quietMs;
+
+    private ThreadPoolExecutor executor;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final AtomicInteger pendingGroups = new AtomicInteger();
+
+    private Counter groupsCounter;
+
+    private Counter profilesCounter;
+
+    private Counter failedCounter;
+
+    private Timer groupTimer;
+
+    @PostConstruct
+    void init() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+
+        executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "score-reconciliation-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+
+        Gauge.builder("score.reconciliation.groups.pending", pendingGroups, AtomicInteger::get).register(meterRegistry);
+        groupsCounter = Counter.builder("score.reconciliation.groups").register(meterRegistry);
+        profilesCounter = Counter.builder("score.reconciliation.profiles").register(meterRegistry);
+        failedCounter = Counter.builder("score.reconciliation.failed").register(meterRegistry);
+        groupTimer = Timer.builder("score.reconciliation.group.duration").register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    //? Cron expression: sec min hrs day mon weekday
+    @Scheduled(cron = "${scoreReconciliationCron:0 0 3 * * *}")
+    @LeaderOnly
+    @Override
+    public void reconcileAllGroups() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Score reconciliation is already running");
+            return;
+        }
+
+        try {
+            //? taken once for the whole run, the tasks keep writing with it even after the lease changed hands
+            long fencingToken = leaderElectionService.getFencingToken();
+            List<ObjectId> groupIds = mongoTemplate.findDistinct(new Query(), "groupId", "userProfiles", ObjectId.class);
+            pendingGroups.set(groupIds.size());
+            log.info("Score reconciliation started for {} groups", groupIds.size());
+
+            AtomicInteger profiles = new AtomicInteger();
+            CompletableFuture<?>[] results = groupIds.stream()
+                    .map(groupId -> CompletableFuture.runAsync(() -> {
+                        try {
+                            profiles.addAndGet(reconcileGroup(groupId.toHexString(), fencingToken));
+                        } catch (RuntimeException e) {
+                            failedCounter.increment();
+                            log.error("Score reconciliation of group {} failed: {}", groupId, e.getMessage());
+                        } finally {
+                            pendingGroups.decrementAndGet();
+                        }
+                    }, executor))
+                    .toArray(CompletableFuture[]::new);
+
+            //? the scheduling thread only submits the groups, the run is closed by the last finished task
+            CompletableFuture.allOf(results).whenComplete((ignored, e) -> {
+                log.info("Score reconciliation finished, {} profiles updated", profiles.get());
+                pendingGroups.set(0);
+                running.set(false);
+            });
+        } catch (RuntimeException e) {
+            pendingGroups.set(0);
+            running.set(false);
+            throw e;
+        }
+    }
+
+    //? profiles written before the rating counters existed only keep their old score, ratings skip them until they are filled
+    @Override
+    public int backfillMissingCounters() {
+        List<ObjectId> groupIds = mongoTemplate.findDistinct(
+                new Query(new Criteria().orOperator(Criteria.where("ratingCount").exists(false), Criteria.where("orderCount").exists(false))),
+                "groupId", "userProfiles", ObjectId.class);
+
+        long fencingToken = leaderElectionService.getCurrentFencingToken();
+        int profiles = 0;
+        for (ObjectId groupId : groupIds) {
+            try {
+                profiles += reconcileGroup(groupId.toHexString(), fencingToken);
+            } catch (RuntimeException e) {
+                failedCounter.increment();
+                log.error("Score counter backfill of group {} failed: {}", groupId, e.getMessage());
+            }
+        }
+        log.info("Score counters backfilled for {} profiles in {} groups", profiles, groupIds.size());
+        return profiles;
+    }
+
+    //? runs outside the leader job write with the token of the current lease
+    @Override
+    public int reconcileGroup(String groupId) {
+        return reconcileGroup(groupId, leaderElectionService.getCurrentFencingToken());
+    }
+
+    private int reconcileGroup(String groupId, long fencingToken) {
+        return groupTimer.record(() -> {
+            ObjectId group = new ObjectId(groupId);
+            LocalDateTime settledBefore = LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(quietMs));
+
+            //? only the settled ratings are needed from the orders of each event, ratings older than ratedAt count as settled
+            Criteria settledRating = new Criteria().andOperator(
+                    Criteria.where("rating").gt(0),
+                    new Criteria().orOperator(Criteria.where("ratedAt").lt(settledBefore), Criteria.where("ratedAt").exists(false)));
+            LookupOperation lookupOperation = LookupOperation.newLookup()
+                    .from("orders")
+                    .localField("_id")
+                    .foreignField("eventId")
+                    .pipeline(Aggregation.match(settledRating), Aggregation.project("rating"))
+                    .as("orders");
+
+            //? profiles rated within the quiet period keep their counters until the next run
+            Criteria quietProfile = new Criteria().andOperator(
+                    new Criteria().orOperator(Criteria.where("ratingUpdatedAt").lt(settledBefore), Criteria.where("ratingUpdatedAt").exists(false)),
+                    fencedBy(fencingToken));
+
+            Aggregation aggregation = Aggregation.newAggregation(
+                    Aggregation.match(Criteria.where("groupId").is(group)),
+                    Aggregation.project("userProfileId"),
+                    lookupOperation,
+                    Aggregation.unwind("orders"),
+                    Aggregation.group("userProfileId")
+                            .sum("orders.rating").as("ratingSum")
+                            .count().as("ratingCount")
+            ).withOptions(AggregationOptions.builder().cursorBatchSize(batchSize).build());
+
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "userProfiles");
+            List<ObjectId> ratedProfiles = new ArrayList<>();
+
+            try (Stream<Document> scores = mongoTemplate.aggregateStream(aggregation, "events", Document.class)) {
+                scores.forEach(score -> {
+                    long ratingSum = score.get("ratingSum", Number.class).longValue();
+                    long ratingCount = score.get("ratingCount", Number.class).longValue();
+                    ObjectId userProfileId = score.getObjectId("_id");
+
+                    ratedProfiles.add(userProfileId);
+                    bulkOperations.updateOne(
+                            new Query(new Criteria().andOperator(Criteria.where("_id").is(userProfileId), quietProfile)),
+                            new Update()
+                                    .set("ratingSum", ratingSum)
+                                    .set("ratingCount", ratingCount)
+                                    .set("score", (double) ratingSum / ratingCount)
+                                    .set("reconciliationToken", fencingToken));
+                });
+            }
+
+            //? members without any rating left are reset in the same batch
+            bulkOperations.updateMulti(
+                    new Query(new Criteria().andOperator(
+                            Criteria.where("groupId").is(group).and("_id").nin(ratedProfiles).and("ratingCount").ne(0), quietProfile)),
+                    new Update().set("ratingSum", 0L).set("ratingCount", 0L).set("score", 0.0).set("reconciliationToken", fencingToken));
+
+            //? order counts belong to the member who placed the orders, orders younger than the quiet period are not counted yet
+            LookupOperation placedOrders = LookupOperation.newLookup()
+                    .from("orders")
+                    .localField("_id")
+                    .foreignField("userProfileId")
+                    .pipeline(Aggregation.match(new Criteria().orOperator(
+                                    Criteria.where("createdAt").lt(settledBefore), Criteria.where("createdAt").exists(false))),
+                            Aggregation.project("_id"))
+                    .as("orders");
+            Criteria quietOrderCount = new Criteria().andOperator(
+                    new Criteria().orOperator(Criteria.where("orderCountUpdatedAt").lt(settledBefore), Criteria.where("orderCountUpdatedAt").exists(false)),
+                    fencedBy(fencingToken));
+
+            Aggregation orderCounts = Aggregation.newAggregation(
+                    Aggregation.match(Criteria.where("groupId").is(group)),
+                    Aggregation.project("_id"),
+                    placedOrders,
+                    Aggregation.project().and(ArrayOperators.Size.lengthOfArray("orders")).as("orderCount")
+            ).withOptions(AggregationOptions.builder().cursorBatchSize(batchSize).build());
+
+            try (Stream<Document> counts = mongoTemplate.aggregateStream(orderCounts, "userProfiles", Document.class)) {
+                counts.forEach(count -> bulkOperations.updateOne(
+                        new Query(new Criteria().andOperator(Criteria.where("_id").is(count.getObjectId("_id")), quietOrderCount)),
+                        new Update()
+                                .set("orderCount", count.get("orderCount", Number.class).longValue())
+                                .set("reconciliationToken", fencingToken)));
+            }
+
+            int modified = bulkOperations.execute().getModifiedCount();
+            userProfileResolver.evictGroup(groupId);
+
+            groupsCounter.increment();
+            profilesCounter.increment(modified);
+            return modified;
+        });
+    }
+
+    //? a profile already written under a newer lease rejects the write
+    private static Criteria fencedBy(long fencingToken) {
+        return new Criteria().orOperator(
+                Criteria.where("reconciliationToken").lte(fencingToken), Criteria.where("reconciliationToken").exists(false));
+    }
+}
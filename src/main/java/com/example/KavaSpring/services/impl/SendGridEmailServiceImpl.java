@@ -1,6 +1,9 @@
 package com.example.KavaSpring.services.impl;
 
+import com.example.KavaSpring.models.dto.EmailDispatchResult;
 import com.example.KavaSpring.services.SendGridEmailService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sendgrid.Method;
 import com.sendgrid.Request;
 import com.sendgrid.Response;
@@ -8,29 +11,39 @@ import com.sendgrid.SendGrid;
 import com.sendgrid.helpers.mail.Mail;
 import com.sendgrid.helpers.mail.objects.Content;
 import com.sendgrid.helpers.mail.objects.Email;
-import lombok.AllArgsConstructor;
+import com.sendgrid.helpers.mail.objects.Personalization;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 @Slf4j
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class SendGridEmailServiceImpl implements SendGridEmailService {
 
+    //? field of a SendGrid validation error, e.g. personalizations.3.to.0.email
+    private static final Pattern PERSONALIZATION_FIELD = Pattern.compile("^personalizations\\.(\\d+)\\.");
+
     private final SendGrid sendGridClient;
 
+    private final ObjectMapper objectMapper;
+
+    //? SendGrid accepts at most 1000 personalizations in a single mail/send call
+    @Value("${sendGridMaxPersonalizations:1000}")
+    private int maxPersonalizations;
+
     @Override
     public Response sendEmail(String from, String to, String subject, Content content) {
         Mail mail = new Mail(new Email(from), subject, new Email(to), content);
-        Request request = new Request();
         Response response = null;
         try {
-            request.setMethod(Method.POST);
-            request.setEndpoint("mail/send");
-            request.setBody(mail.build());
-            response = sendGridClient.api(request);
+            response = send(mail);
         } catch (IOException e) {
             log.error(e.getMessage());
         }
@@ -43,6 +56,95 @@ public class SendGridEmailServiceImpl implements SendGridEmailService {
         logResponse(response);
     }
 
+    //? every recipient gets its own personalization so the recipients do not see each other
+    @Override
+    public List<EmailDispatchResult> sendBatch(String from, List<String> recipients, String subject, Content content) {
+        List<EmailDispatchResult> results = new ArrayList<>(recipients.size());
+
+        for (int start = 0; start < recipients.size(); start += maxPersonalizations) {
+            List<String> chunk = recipients.subList(start, Math.min(start + maxPersonalizations, recipients.size()));
+            results.addAll(sendChunk(from, chunk, subject, content, true));
+        }
+        return results;
+    }
+
+    //? mail/send accepts or rejects the whole request, a rejection naming single personalizations is resent once without them
+    private List<EmailDispatchResult> sendChunk(String from, List<String> recipients, String subject, Content content, boolean resendValid) {
+        Mail mail = new Mail();
+        mail.setFrom(new Email(from));
+        mail.setSubject(subject);
+        mail.addContent(content);
+        for (String recipient : recipients) {
+            Personalization personalization = new Personalization();
+            personalization.addTo(new Email(recipient));
+            mail.addPersonalization(personalization);
+        }
+
+        Response response;
+        try {
+            response = send(mail);
+        } catch (IOException e) {
+            return failAll(recipients, 0, e.getMessage());
+        }
+
+        int statusCode = response.getStatusCode();
+        log.info("Batch of {} emails dispatched with status code {}", recipients.size(), statusCode);
+        if (statusCode >= 200 && statusCode < 300) {
+            return recipients.stream().map(recipient -> new EmailDispatchResult(recipient, statusCode, true, null)).toList();
+        }
+
+        Map<Integer, String> rejected = statusCode == 400 ? rejectedPersonalizations(response.getBody()) : Map.of();
+        if (rejected.isEmpty() || !resendValid) {
+            return failAll(recipients, statusCode, response.getBody());
+        }
+
+        //? results keep the order of the recipients
+        EmailDispatchResult[] results = new EmailDispatchResult[recipients.size()];
+        List<Integer> valid = new ArrayList<>();
+        for (int i = 0; i < recipients.size(); i++) {
+            if (rejected.containsKey(i)) {
+                results[i] = new EmailDispatchResult(recipients.get(i), statusCode, false, rejected.get(i));
+            } else {
+                valid.add(i);
+            }
+        }
+        if (!valid.isEmpty()) {
+            List<EmailDispatchResult> resent = sendChunk(from, valid.stream().map(recipients::get).toList(), subject, content, false);
+            for (int i = 0; i < valid.size(); i++) {
+                results[valid.get(i)] = resent.get(i);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private Map<Integer, String> rejectedPersonalizations(String body) {
+        Map<Integer, String> rejected = new HashMap<>();
+        try {
+            for (JsonNode error : objectMapper.readTree(body).path("errors")) {
+                Matcher matcher = PERSONALIZATION_FIELD.matcher(error.path("field").asText(""));
+                if (matcher.find()) {
+                    rejected.put(Integer.parseInt(matcher.group(1)), error.path("message").asText());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unreadable SendGrid error body: {}", e.getMessage());
+            return Map.of();
+        }
+        return rejected;
+    }
+
+    private static List<EmailDispatchResult> failAll(List<String> recipients, int statusCode, String error) {
+        return recipients.stream().map(recipient -> new EmailDispatchResult(recipient, statusCode, false, error)).toList();
+    }
+
+    private Response send(Mail mail) throws IOException {
+        Request request = new Request();
+        request.setMethod(Method.POST);
+        request.setEndpoint("mail/send");
+        request.setBody(mail.build());
+        return sendGridClient.api(request);
+    }
+
     private static void logResponse(Response response) {
         if (response != null) {
             log.info("Status Code: " + response.getStatusCode() + ", Body: " + response.getBody() + ", Headers: "
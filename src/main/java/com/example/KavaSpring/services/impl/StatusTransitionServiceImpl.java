@@ -0,0 +1,88 @@
+package com.example.KavaSpring.services.impl;
+
+import com.example.KavaSpring.exceptions.IllegalStatusTransitionException;
+import com.example.KavaSpring.exceptions.NotFoundException;
+import com.example.KavaSpring.models.dao.Event;
+import com.example.KavaSpring.models.dao.Order;
+import com.example.KavaSpring.models.enums.EventStatus;
+import com.example.KavaSpring.models.enums.OrderStatus;
+import com.example.KavaSpring.services.StatusTransitionService;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Legal status transitions of events and orders, keyed by the target status.
+ * A transition is one findAndModify that only matches while the document is in one of the allowed source statuses.
+ */
+@Service
+@Slf4j
+@AllArgsConstructor
+public class StatusTransitionServiceImpl implements StatusTransitionService {
+
+    private static final Map<EventStatus, Set<EventStatus>> EVENT_SOURCES = Map.of(
+            EventStatus.IN_PROGRESS, EnumSet.of(EventStatus.PENDING),
+            EventStatus.COMPLETED, EnumSet.of(EventStatus.IN_PROGRESS),
+            EventStatus.CANCELLED, EnumSet.of(EventStatus.PENDING, EventStatus.IN_PROGRESS)
+    );
+
+    private static final Map<OrderStatus, Set<OrderStatus>> ORDER_SOURCES = Map.of(
+            OrderStatus.READY, EnumSet.of(OrderStatus.IN_PROGRESS),
+            OrderStatus.CANCELLED, EnumSet.of(OrderStatus.IN_PROGRESS)
+    );
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public Event transitionEvent(String eventId, EventStatus target) {
+        Update update = new Update().set("status", target);
+        if (target == EventStatus.COMPLETED || target == EventStatus.CANCELLED) {
+            update.set("completedAt", LocalDateTime.now());
+        }
+        return transition(Event.class, eventId, target, EVENT_SOURCES.getOrDefault(target, Set.of()), update);
+    }
+
+    @Override
+    public Order transitionOrder(String orderId, OrderStatus target) {
+        return transition(Order.class, orderId, target, ORDER_SOURCES.getOrDefault(target, Set.of()), new Update().set("status", target));
+    }
+
+    @Override
+    public Set<OrderStatus> orderSourcesOf(OrderStatus target) {
+        return ORDER_SOURCES.getOrDefault(target, Set.of());
+    }
+
+    private <T> T transition(Class<T> type, String id, Enum<?> target, Set<? extends Enum<?>> sources, Update update) {
+        String name = type.getSimpleName();
+        if (target == null || sources.isEmpty()) {
+            throw new IllegalStatusTransitionException(name + " can not be moved to " + target);
+        }
+
+        Query query = new Query(Criteria.where("_id").is(id).and("status").in(sources));
+        T updated = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), type);
+        if (updated != null) {
+            log.info("{} {} moved to {}", name, id, target);
+            return updated;
+        }
+
+        //? the write did not apply, tell a missing document apart from a disallowed or lost transition
+        Query current = new Query(Criteria.where("_id").is(id));
+        current.fields().include("status");
+        Document document = mongoTemplate.findOne(current, Document.class, mongoTemplate.getCollectionName(type));
+        if (document == null) {
+            throw new NotFoundException(name + " with the given id was not found");
+        }
+        throw new IllegalStatusTransitionException(name + " can not be moved from " + document.getString("status") + " to " + target);
+    }
+}
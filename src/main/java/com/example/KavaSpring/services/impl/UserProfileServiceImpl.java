@@ -13,11 +13,14 @@ import com.example.KavaSpring.repository.GroupRepository;
 import com.example.KavaSpring.repository.UserProfileRepository;
 import com.example.KavaSpring.repository.UserRepository;
 import com.example.KavaSpring.security.utils.Helper;
+import com.example.KavaSpring.security.utils.UserProfileResolver;
 import com.example.KavaSpring.services.AmazonS3Service;
+import com.example.KavaSpring.services.ScoreReconciliationService;
 import com.example.KavaSpring.services.UserProfileService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.*;
@@ -51,6 +54,10 @@ public class UserProfileServiceImpl implements UserProfileService {
 
     private final MongoTemplate mongoTemplate;
 
+    private final UserProfileResolver userProfileResolver;
+
+    private final ScoreReconciliationService scoreReconciliationService;
+
 
     @Override
     public UserProfileResponse createUserProfile(UserProfileRequest request, MultipartFile photoFile) {
@@ -96,6 +103,7 @@ public class UserProfileServiceImpl implements UserProfileService {
         }
 
         userProfileRepository.save(userProfile);
+        userProfileResolver.evict(request.getUserId());
 
         log.info("User profile created");
         return converterService.convertToUserProfileResponse(request);
@@ -112,7 +120,7 @@ public class UserProfileServiceImpl implements UserProfileService {
 
     @Override
     public byte[] downloadUserProfilePhoto() throws IOException {
-        UserProfile userProfile = userProfileRepository.getUserProfileByUserId(Helper.getLoggedInUserId());
+        UserProfile userProfile = userProfileResolver.getLoggedInUserProfile();
         if (userProfile == null) {
             throw new NotFoundException("The UserProfile was not retrieved successfully");
         }
@@ -133,6 +141,9 @@ public class UserProfileServiceImpl implements UserProfileService {
             throw new IllegalStateException("UserProfile is null");
         }
 
+        //? only the edited fields are written, a whole document save would overwrite the counters kept by ratings and orders
+        Update update = new Update();
+
         if (photoFile != null) {
             try {
                 String fileName = userProfile.getId();
@@ -140,7 +151,7 @@ public class UserProfileServiceImpl implements UserProfileService {
 
                 amazonS3Service.updateFileInS3(path, fileName, photoFile.getInputStream());
 
-                userProfile.setPhotoUri(path +  "/"  + fileName);
+                update.set("photoUri", path +  "/"  + fileName);
 
                 log.info("UserProfile photo updated successfully");
             } catch (IOException e) {
@@ -151,22 +162,25 @@ public class UserProfileServiceImpl implements UserProfileService {
 
 
         if (firstName != null && !firstName.trim().isEmpty()) {
-            userProfile.setFirstName(firstName);
+            update.set("firstName", firstName);
         }
 
         if (lastName != null && !lastName.trim().isEmpty()) {
-            userProfile.setLastName(lastName);
+            update.set("lastName", lastName);
         }
 
-        userProfileRepository.save(userProfile);
+        if (!update.getUpdateObject().isEmpty()) {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(userProfile.getId())), update, UserProfile.class);
+        }
+        userProfileResolver.evict(userProfile.getUserId());
 
         log.info("UserProfile successfully updated");
         return "UserProfile successfully updated";
     }
 
     @Override
-    public List<GroupMemberResponse> getGroupMembers(SortCondition condition) {
-        UserProfile userProfile = userProfileRepository.getUserProfileByUserId(Helper.getLoggedInUserId());
+    public PageResponse<GroupMemberResponse> getGroupMembers(SortCondition condition, KeysetPageRequest page) {
+        UserProfile userProfile = userProfileResolver.getLoggedInUserProfile();
         String groupId = userProfile.getGroupId();
         List<GroupMemberResponse> groupMembers = new ArrayList<>();
 
@@ -174,68 +188,55 @@ public class UserProfileServiceImpl implements UserProfileService {
             throw new IllegalStateException("Bad groupId value present in the user profile");
         }
 
-        MatchOperation matchUserProfilesByGroupId = Aggregation.match(Criteria.where("groupId").is(groupId));
-
-        AddFieldsOperation convertToStringId = Aggregation.addFields().addField("_id")
-                .withValue(ConvertOperators.ToString.toString("$_id")).build();
-
-        LookupOperation lookupOperation = Aggregation.lookup("orders", "_id", "userProfileId", "orderDetails");
-
-        UnwindOperation unwindOperation = Aggregation.unwind("orderDetails");
-
-        GroupOperation groupOperation =  Aggregation.group("_id")
-                .first("orderDetails.userProfileId").as("userProfileId")
-                .first("firstName").as("firstName")
-                .first("lastName").as("lastName")
-                .first("score").as("score")
-                .first("photoUri").as("profilePhoto")
-                .count().as("orderCount");
-
+        //? members are listed once they placed an order, the count is kept on the profile so the page is cut on a profile index
+        MatchOperation matchUserProfilesByGroupId = Aggregation.match(Criteria.where("groupId").is(new ObjectId(groupId))
+                .and("orderCount").gt(0));
 
         ProjectionOperation projectionOperation = Aggregation.project()
-                .and("profilePhoto").as("photoUrl")
-                .andInclude("userProfileId")
+                .and("_id").as("userProfileId")
+                .and("photoUri").as("photoUrl")
                 .andInclude("firstName")
                 .andInclude("lastName")
                 .andInclude("groupId")
                 .andInclude("score")
                 .andInclude("orderCount");
 
-        SortOperation sortOperation;
+        String sortField;
+        Sort.Direction direction;
         switch (condition) {
-            case SCORE:
-                sortOperation = Aggregation.sort(Sort.by(Sort.Direction.DESC, "score"));
-                break;
             case ORDER_COUNT:
-                sortOperation = Aggregation.sort(Sort.by(Sort.Direction.DESC, "orderCount"));
+                sortField = "orderCount";
+                direction = Sort.Direction.DESC;
                 break;
             case FIRSTNAME:
-                sortOperation = Aggregation.sort(Sort.by(Sort.Direction.ASC, "firstName"));
+                sortField = "firstName";
+                direction = Sort.Direction.ASC;
                 break;
+            case SCORE:
             default:
-                sortOperation = Aggregation.sort(Sort.by(Sort.Direction.DESC, "score"));
+                sortField = "score";
+                direction = Sort.Direction.DESC;
                 break;
         }
 
-        Aggregation userProfileAggregation = Aggregation.newAggregation(
-                matchUserProfilesByGroupId,
-                convertToStringId,
-                lookupOperation,
-                unwindOperation,
-                groupOperation,
-                projectionOperation,
-                sortOperation
+        //? the user profile id breaks ties between equal sort values
+        PageResponse<Document> userProfiles = KeysetPagination.aggregatePage(
+                mongoTemplate,
+                "userProfiles",
+                List.of(matchUserProfilesByGroupId),
+                List.of(projectionOperation),
+                sortField,
+                direction,
+                page
         );
 
-        List<Document> userProfiles = mongoTemplate.aggregate(userProfileAggregation, "userProfiles", Document.class).getMappedResults();
-
-        for (Document userProfileDoc : userProfiles) {
+        for (Document userProfileDoc : userProfiles.getItems()) {
             GroupMemberResponse groupMember = new GroupMemberResponse();
-            groupMember.setUserProfileId(userProfileDoc.getString("userProfileId"));
+            groupMember.setUserProfileId(userProfileDoc.getObjectId("userProfileId").toHexString());
             groupMember.setFirstName(userProfileDoc.getString("firstName"));
             groupMember.setLastName(userProfileDoc.getString("lastName"));
-            groupMember.setScore(userProfileDoc.getDouble("score").floatValue());
-            groupMember.setOrderCount(userProfileDoc.getInteger("orderCount"));
+            groupMember.setScore(userProfileDoc.get("score", Number.class).floatValue());
+            groupMember.setOrderCount(userProfileDoc.get("orderCount", Number.class).intValue());
 
             String photoUri = userProfileDoc.getString("photoUrl");
             if (photoUri != null && !photoUri.isEmpty()) {
@@ -245,57 +246,20 @@ public class UserProfileServiceImpl implements UserProfileService {
 
             groupMembers.add(groupMember);
         }
-        return groupMembers;
+        return new PageResponse<>(groupMembers, userProfiles.getNextCursor(), userProfiles.getTotalCount());
     }
 
     @Override
     public void calculateScore() {
-        UserProfile userProfile = userProfileRepository.getUserProfileByUserId(Helper.getLoggedInUserId());
+        UserProfile userProfile = userProfileResolver.getLoggedInUserProfile();
 
         if (userProfile == null) {
             throw new EntityNotFoundException("The userProfile was not found");
         }
 
 
-        //? average score calculation logic
-        MatchOperation matchGroup = Aggregation.match(Criteria.where("groupId").is(userProfile.getGroupId()));
-
-        AddFieldsOperation addStringId = Aggregation.addFields().addField("_id")
-                .withValue(ConvertOperators.ToString.toString("$_id")).build();
-
-        LookupOperation lookupOperation = Aggregation.lookup("orders", "_id", "eventId", "orders");
-
-        UnwindOperation unwindOperation = Aggregation.unwind("orders");
-
-        MatchOperation matchRating = Aggregation.match(Criteria.where("orders.rating").ne(0));
-
-        GroupOperation groupAndCalculateScore = Aggregation.group("userProfileId")
-                .avg("orders.rating").as("score");
-
-        ProjectionOperation projectionOperation = Aggregation.project()
-                .and("_id").as("userProfileId")
-                .and("score").as("score")
-                .andExclude("_id");
-
-        Aggregation aggregation = Aggregation.newAggregation(
-                matchGroup,
-                addStringId,
-                lookupOperation,
-                unwindOperation,
-                matchRating,
-                groupAndCalculateScore,
-                projectionOperation
-        );
-
-        AggregationResults<ScoreCalculationDto> results = mongoTemplate.aggregate(aggregation, "events", ScoreCalculationDto.class);
-
-        List<ScoreCalculationDto> userScores = results.getMappedResults();
-
-        for (ScoreCalculationDto score: userScores) {
-            Query query = new Query(Criteria.where("_id").is(score.getUserProfileId()));
-            Update update = new Update().set("score", score.getScore());
-            mongoTemplate.updateFirst(query, update, UserProfile.class);
-        }
+        //? ratings keep the counters current incrementally, this only reconciles the caller's group
+        scoreReconciliationService.reconcileGroup(userProfile.getGroupId());
         log.info("Scores successfully updated");
     }
 
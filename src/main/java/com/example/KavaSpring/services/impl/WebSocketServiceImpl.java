@@ -3,7 +3,6 @@ package com.example.KavaSpring.services.impl;
 import com.example.KavaSpring.models.dao.Event;
 import com.example.KavaSpring.models.dao.Order;
 import com.example.KavaSpring.models.dto.OrderMessage;
-import com.example.KavaSpring.repository.EventRepository;
 import com.example.KavaSpring.services.WebSocketService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -11,8 +10,6 @@ import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Optional;
-
 @Service
 @Transactional
 @Slf4j
@@ -21,20 +18,15 @@ public class WebSocketServiceImpl implements WebSocketService {
 
     private final SimpMessagingTemplate messagingTemplate;
 
-    private final EventRepository eventRepository;
-
+    //? the event is passed in by the caller, it only needs the id and the creator userProfileId
     @Override
-    public void notifyEventUserProfile(Order order) {
-        Optional<Event> event = eventRepository.findById(order.getEventId());
-        if (event.isEmpty()) {
-            throw new IllegalStateException("No event present for the order being placed");
-        }
-        String userProfileId = event.get().getUserProfileId();
+    public void notifyEventUserProfile(Order order, Event event) {
+        String userProfileId = event.getUserProfileId();
 
         OrderMessage message = new OrderMessage();
         message.setOrderId(order.getId());
         message.setUserProfileId(order.getUserProfileId());
-        message.setEventId(event.get().getId());
+        message.setEventId(event.getId());
         message.setDescription("New order was placed for your event");
 
         log.info("Notifying the event creator");
@@ -0,0 +1,102 @@
+package com.example.KavaSpring.services.impl;
+
+import com.example.KavaSpring.converters.ConverterService;
+import com.example.KavaSpring.models.dao.Event;
+import com.example.KavaSpring.models.dao.UserProfile;
+import com.example.KavaSpring.models.dto.EventRequest;
+import com.example.KavaSpring.models.enums.EventType;
+import com.example.KavaSpring.repository.EventRepository;
+import com.example.KavaSpring.security.utils.UserProfileResolver;
+import com.example.KavaSpring.services.ActiveEventRegistry;
+import com.example.KavaSpring.services.EventDeadlineService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EventServiceImplCreateTest {
+
+    private static final int THREADS = 32;
+
+    @Mock
+    private EventRepository eventRepository;
+
+    @Mock
+    private ConverterService converterService;
+
+    @Mock
+    private EventDeadlineService eventDeadlineService;
+
+    @Mock
+    private ActiveEventRegistry activeEventRegistry;
+
+    @Mock
+    private UserProfileResolver userProfileResolver;
+
+    @InjectMocks
+    private EventServiceImpl eventService;
+
+    @BeforeEach
+    void setUp() {
+        UserProfile userProfile = new UserProfile();
+        userProfile.setId("665f1c2b9d3e4a5b6c7d8e91");
+        userProfile.setGroupId("665f1c2b9d3e4a5b6c7d8e92");
+        when(userProfileResolver.getLoggedInUserProfile()).thenReturn(userProfile);
+    }
+
+    @Test
+    void concurrentCreatesLeaveOneActiveEventPerCreator() throws Exception {
+        //? stands in for the partial unique index on userProfileId of active events
+        Map<String, Event> activeEvents = new ConcurrentHashMap<>();
+        when(eventRepository.insert(any(Event.class))).thenAnswer(invocation -> {
+            Event event = invocation.getArgument(0);
+            if (activeEvents.putIfAbsent(event.getUserProfileId(), event) != null) {
+                throw new DuplicateKeyException("E11000 duplicate key error index: event_creator_active_unique");
+            }
+            return event;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    eventService.createEvent(new EventRequest("Coffee", "Morning coffee run", EventType.COFFEE, 10));
+                    return true;
+                } catch (IllegalStateException e) {
+                    assertEquals("User already has an active event (PENDING or IN_PROGRESS)", e.getMessage());
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+
+        int created = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get(10, TimeUnit.SECONDS)) {
+                created++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(1, created);
+        verify(eventRepository, times(THREADS)).insert(any(Event.class));
+        verify(eventDeadlineService, times(1)).schedule(any(), any());
+        verify(activeEventRegistry, times(1)).put(any(Event.class));
+    }
+}
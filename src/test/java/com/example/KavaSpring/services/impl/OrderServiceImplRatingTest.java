@@ -0,0 +1,110 @@
+package com.example.KavaSpring.services.impl;
+
+import com.example.KavaSpring.exceptions.OrderAlreadyRatedException;
+import com.example.KavaSpring.models.dao.Event;
+import com.example.KavaSpring.models.dao.Order;
+import com.example.KavaSpring.models.dao.UserProfile;
+import com.example.KavaSpring.repository.OrderRepository;
+import com.example.KavaSpring.security.utils.UserProfileResolver;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderServiceImplRatingTest {
+
+    private static final String ORDER_ID = "665f1c2b9d3e4a5b6c7d8e9f";
+
+    private static final int THREADS = 32;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private UserProfileResolver userProfileResolver;
+
+    @InjectMocks
+    private OrderServiceImpl orderService;
+
+    @Test
+    void concurrentRatingsOfTheSameOrderApplyExactlyOnce() throws Exception {
+        //? stands in for the conditional update on (_id, rating == 0)
+        AtomicInteger storedRating = new AtomicInteger();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(Order.class))).thenAnswer(invocation -> {
+            Update update = invocation.getArgument(1);
+            int rating = (Integer) update.getUpdateObject().get("$set", Document.class).get("rating");
+            if (!storedRating.compareAndSet(0, rating)) {
+                return null;
+            }
+            Order order = new Order();
+            order.setEventId("665f1c2b9d3e4a5b6c7d8e90");
+            return order;
+        });
+        Event event = new Event();
+        event.setUserProfileId("665f1c2b9d3e4a5b6c7d8e91");
+        when(mongoTemplate.findOne(any(Query.class), eq(Event.class))).thenReturn(event);
+        UserProfile creator = new UserProfile();
+        creator.setUserId("665f1c2b9d3e4a5b6c7d8e93");
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class), eq(UserProfile.class))).thenReturn(creator);
+        when(orderRepository.existsById(ORDER_ID)).thenReturn(true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int rating = i % 5 + 1;
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    orderService.rateOrder(ORDER_ID, rating);
+                    return true;
+                } catch (OrderAlreadyRatedException e) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+
+        int applied = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get(10, TimeUnit.SECONDS)) {
+                applied++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(1, applied);
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(UpdateDefinition.class), eq(UserProfile.class));
+        verify(userProfileResolver, times(1)).evict(creator.getUserId());
+        verify(orderRepository, never()).save(any());
+    }
+
+    @Test
+    void ratingAMissingOrderFails() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(Order.class))).thenReturn(null);
+        when(orderRepository.existsById(ORDER_ID)).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () -> orderService.rateOrder(ORDER_ID, 4));
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class), eq(UserProfile.class));
+    }
+}